@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader.benchmark;
+
+import info.varden.andesite.core.BlockBreakSource;
+import info.varden.andesite.core.SilkTouchMode;
+import info.varden.andesite.core.wrapper.AndesiteItemStack;
+import info.varden.andesite.modloader.ConditionalDropRule;
+import info.varden.andesite.modloader.DropDispatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.minecraft.block.Block;
+import net.minecraft.item.ItemStack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Harvest drop dispatch with a growing number of registered drop rules.
+ * <p>
+ * The "same" layout registers every rule on the harvested block, the "spread"
+ * layout registers one rule per block. The legacy benchmark emulates one
+ * unfiltered event listener per rule, as drop rules used to be registered.
+ * @author Marius
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DropDispatchBenchmark {
+    
+    /**
+     * Number of registered drop rules.
+     */
+    @Param({ "1", "10", "100", "1000" })
+    public int rules;
+    /**
+     * How rules are distributed over blocks.
+     */
+    @Param({ "same", "spread" })
+    public String layout;
+    
+    /**
+     * The dispatcher under test.
+     */
+    private DropDispatcher dispatcher;
+    /**
+     * All registered rules, for the legacy benchmark.
+     */
+    private ConditionalDropRule[] allRules;
+    /**
+     * The harvested block.
+     */
+    private Block harvested;
+    /**
+     * Reused drop list.
+     */
+    private List<ItemStack> drops;
+    
+    /**
+     * Registers the drop rules.
+     */
+    @Setup
+    public void setup() {
+        StandInRegistries registries = StandInRegistries.install(this.rules, 1);
+        List<AndesiteItemStack> items = Collections.singletonList(AndesiteItemStack.create(registries.itemId(0), 1, 0));
+        this.dispatcher = new DropDispatcher();
+        this.allRules = new ConditionalDropRule[this.rules];
+        for (int i = 0; i < this.rules; i++) {
+            int fortune = i % 4 == 0 ? -1 : i % 4;
+            this.allRules[i] = new ConditionalDropRule(SilkTouchMode.ANY, BlockBreakSource.ANY, fortune, items, 1.0F, false, null);
+            this.dispatcher.addConditionalDrops("same".equals(this.layout) ? registries.block(0) : registries.block(i), this.allRules[i]);
+        }
+        this.dispatcher.compilePending();
+        this.harvested = registries.block(0);
+        this.drops = new ArrayList<ItemStack>();
+    }
+    
+    /**
+     * Dispatches one harvest through the block-indexed dispatcher.
+     * @return The resulting drop chance
+     */
+    @Benchmark
+    public float dispatch() {
+        this.drops.clear();
+        return this.dispatcher.applyConditionalDrops(this.harvested, false, null, 1, this.drops, 1.0F);
+    }
+    
+    /**
+     * Dispatches one harvest by evaluating every registered rule, like one listener per rule would.
+     * @return The resulting drop chance
+     */
+    @Benchmark
+    public float legacy() {
+        this.drops.clear();
+        float chance = 1.0F;
+        for (ConditionalDropRule rule : this.allRules) {
+            if (rule.matches(false, false, 1)) {
+                chance = rule.apply(this.drops);
+            }
+        }
+        return chance;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader.benchmark;
+
+import info.varden.andesite.core.wrapper.AndesiteItemStack;
+import info.varden.andesite.modloader.ForgeItemStackTranslator;
+import info.varden.andesite.modloader.ItemStackTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.minecraft.item.ItemStack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Translation of Andesite item stacks into Minecraft item stacks.
+ * @author Marius
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ItemStackTranslatorBenchmark {
+    
+    /**
+     * Number of distinct item and block IDs.
+     */
+    @Param({ "1", "64", "1024" })
+    public int ids;
+    
+    /**
+     * Item stacks to translate, alternating between items and blocks.
+     */
+    private AndesiteItemStack[] stacks;
+    /**
+     * Pre-resolved templates of the item stacks.
+     */
+    private ItemStackTemplate[] templates;
+    /**
+     * Index of the next item stack.
+     */
+    private int next = 0;
+    
+    /**
+     * Creates the item stacks to translate.
+     */
+    @Setup
+    public void setup() {
+        StandInRegistries registries = StandInRegistries.install(this.ids, this.ids);
+        List<AndesiteItemStack> list = new ArrayList<AndesiteItemStack>(this.ids);
+        for (int i = 0; i < this.ids; i++) {
+            list.add(AndesiteItemStack.create(i % 2 == 0 ? registries.itemId(i) : registries.blockId(i), 1 + i % 64, 0));
+        }
+        this.stacks = list.toArray(new AndesiteItemStack[list.size()]);
+        this.templates = ForgeItemStackTranslator.compile(list);
+    }
+    
+    /**
+     * Gets the index of the next item stack.
+     * @return Item stack index
+     */
+    private int next() {
+        int i = this.next;
+        this.next = i + 1 == this.stacks.length ? 0 : i + 1;
+        return i;
+    }
+    
+    /**
+     * Translates an item stack with a warm resolution cache.
+     * @return The translated item stack
+     */
+    @Benchmark
+    public ItemStack translate() {
+        return ForgeItemStackTranslator.translate(this.stacks[next()]);
+    }
+    
+    /**
+     * Translates an item stack after clearing the resolution cache.
+     * @return The translated item stack
+     */
+    @Benchmark
+    public ItemStack translateUncached() {
+        ForgeItemStackTranslator.clearCache();
+        return ForgeItemStackTranslator.translate(this.stacks[next()]);
+    }
+    
+    /**
+     * Creates an item stack from a pre-resolved template.
+     * @return The created item stack
+     */
+    @Benchmark
+    public ItemStack template() {
+        return this.templates[next()].create();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader.benchmark;
+
+import info.varden.andesite.core.AndesiteProject;
+import info.varden.andesite.io.AndesiteIO;
+import info.varden.andesite.modloader.LoadedPackage;
+import info.varden.andesite.modloader.PackageLoader;
+import info.varden.andesite.modloader.VerifiedPackageCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading, decrypting and verifying Andesite mod packages.
+ * <p>
+ * Packages are read from the directory given by the packageDir parameter or
+ * the andesite.bench.packages system property. Packages generated with the
+ * Andesite packaging tools work well as synthetic input.
+ * @author Marius
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PackageReadBenchmark {
+    
+    /**
+     * Directory containing the packages to read.
+     */
+    @Param({ "" })
+    public String packageDir;
+    /**
+     * Number of loader threads.
+     */
+    @Param({ "1", "4" })
+    public int threads;
+    
+    /**
+     * Package files to read.
+     */
+    private File[] files;
+    /**
+     * Loader without verification cache.
+     */
+    private PackageLoader loader;
+    /**
+     * Loader with a warm verification cache.
+     */
+    private PackageLoader cachedLoader;
+    /**
+     * Index of the next package.
+     */
+    private int next = 0;
+    
+    /**
+     * Finds the packages and warms up the verification cache.
+     * @throws IOException If the cache directory could not be created
+     */
+    @Setup
+    public void setup() throws IOException {
+        String dir = this.packageDir.isEmpty() ? System.getProperty("andesite.bench.packages", "") : this.packageDir;
+        if (dir.isEmpty()) {
+            throw new IllegalStateException("No package directory given; pass -p packageDir=<dir> or -Dandesite.bench.packages=<dir>");
+        }
+        this.loader = new PackageLoader(new File(dir), this.threads);
+        this.files = this.loader.findPackages();
+        if (this.files.length == 0) {
+            throw new IllegalStateException("No .anp packages found in " + dir);
+        }
+        File cacheDir = File.createTempFile("andesite-bench", "");
+        cacheDir.delete();
+        cacheDir.deleteOnExit();
+        VerifiedPackageCache cache = new VerifiedPackageCache(cacheDir);
+        this.cachedLoader = new PackageLoader(new File(dir), this.threads, cache);
+        this.cachedLoader.readPackages(this.files);
+        cache.save();
+    }
+    
+    /**
+     * Reads a single package on the calling thread.
+     * @return The read project
+     * @throws Exception If the package could not be read
+     */
+    @Benchmark
+    public AndesiteProject readSignedPackage() throws Exception {
+        File file = this.files[this.next];
+        this.next = (this.next + 1) % this.files.length;
+        return AndesiteIO.readSignedPackage(file);
+    }
+    
+    /**
+     * Reads all packages on the loader worker pool.
+     * @return The read packages
+     */
+    @Benchmark
+    public List<LoadedPackage> readAll() {
+        return this.loader.readPackages(this.files);
+    }
+    
+    /**
+     * Reads all packages through a warm verification cache.
+     * @return The read packages
+     */
+    @Benchmark
+    public List<LoadedPackage> readAllCached() {
+        return this.cachedLoader.readPackages(this.files);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader.benchmark;
+
+import info.varden.andesite.modloader.ForgeItemStackTranslator;
+import info.varden.andesite.modloader.GameRegistryView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+import net.minecraft.item.Item;
+
+/**
+ * Map-backed stand-in for the Forge game registries, usable without a Minecraft client.
+ * @author Marius
+ */
+public class StandInRegistries extends GameRegistryView {
+    
+    /**
+     * Registered items by ID.
+     */
+    private final Map<String, Item> items = new HashMap<String, Item>();
+    /**
+     * Registered blocks by ID.
+     */
+    private final Map<String, Block> blocks = new HashMap<String, Block>();
+    /**
+     * Item IDs in registration order.
+     */
+    private final List<String> itemIds = new ArrayList<String>();
+    /**
+     * Blocks in registration order.
+     */
+    private final List<Block> blockList = new ArrayList<Block>();
+    /**
+     * Block IDs in registration order.
+     */
+    private final List<String> blockIds = new ArrayList<String>();
+    
+    /**
+     * Creates stand-in registries and installs them as the active registry view.
+     * @param blockCount Number of blocks to register
+     * @param itemCount Number of items to register
+     * @return The installed registries
+     */
+    public static StandInRegistries install(int blockCount, int itemCount) {
+        StandInRegistries registries = new StandInRegistries();
+        registries.blocks.put(AIR, newBlock());
+        for (int i = 0; i < blockCount; i++) {
+            String id = "bench:block_" + i;
+            Block block = newBlock();
+            registries.blocks.put(id, block);
+            registries.blockIds.add(id);
+            registries.blockList.add(block);
+        }
+        for (int i = 0; i < itemCount; i++) {
+            String id = "bench:item_" + i;
+            registries.items.put(id, new Item());
+            registries.itemIds.add(id);
+        }
+        GameRegistryView.set(registries);
+        ForgeItemStackTranslator.clearCache();
+        return registries;
+    }
+    
+    /**
+     * Creates a plain stone-like block.
+     * @return A new block
+     */
+    private static Block newBlock() {
+        return new Block(Material.rock) {
+        };
+    }
+    
+    /**
+     * Gets a registered block by index.
+     * @param index Registration index
+     * @return The block
+     */
+    public Block block(int index) {
+        return this.blockList.get(index);
+    }
+    
+    /**
+     * Gets a registered block ID by index.
+     * @param index Registration index
+     * @return The block ID
+     */
+    public String blockId(int index) {
+        return this.blockIds.get(index);
+    }
+    
+    /**
+     * Gets a registered item ID by index.
+     * @param index Registration index
+     * @return The item ID
+     */
+    public String itemId(int index) {
+        return this.itemIds.get(index);
+    }
+    
+    /**
+     * Looks up a stand-in item.
+     * @param id The item ID
+     * @return The item, or null if no item is registered by that ID
+     */
+    @Override
+    public Item getItem(String id) {
+        return this.items.get(id);
+    }
+    
+    /**
+     * Looks up a stand-in block.
+     * @param id The block ID
+     * @return The block, or null if no block is registered by that ID
+     */
+    @Override
+    public Block getBlock(String id) {
+        return this.blocks.get(id);
+    }
+}
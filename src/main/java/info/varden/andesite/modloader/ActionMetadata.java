@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import info.varden.andesite.core.Action;
+import info.varden.andesite.core.ActionData;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the {@link ActionData} metadata of action classes.
+ * <p>
+ * The annotation is read once per action class instead of once per executed
+ * action.
+ * @author Marius
+ */
+public abstract class ActionMetadata {
+    
+    /**
+     * Andesite versions required by action classes.
+     */
+    private static final Map<Class<?>, Integer> VERSIONS = new ConcurrentHashMap<Class<?>, Integer>();
+    
+    /**
+     * Gets the Andesite version an action class requires.
+     * @param actionClass The action class
+     * @return The required Andesite version, or 0 if the class has no action metadata
+     */
+    public static int getVersion(Class<?> actionClass) {
+        Integer version = VERSIONS.get(actionClass);
+        if (version == null) {
+            ActionData data = actionClass.getAnnotation(ActionData.class);
+            version = data == null ? 0 : data.version();
+            VERSIONS.put(actionClass, version);
+        }
+        return version;
+    }
+    
+    /**
+     * Checks whether an action is supported by this version of Andesite Mod Loader.
+     * @param action The action
+     * @return True if the action does not require a newer Andesite version
+     */
+    public static boolean isSupported(Action action) {
+        return getVersion(action.getClass()) <= AndesiteML.ANDESITE_VERSION;
+    }
+}
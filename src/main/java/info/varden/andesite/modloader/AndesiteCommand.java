@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+import net.minecraftforge.fml.relauncher.Side;
+
+/**
+ * The /andesite server command.
+ * @author Marius
+ */
+public class AndesiteCommand extends CommandBase {
+    
+    /**
+     * Number of rules listed by default.
+     */
+    private static final int DEFAULT_RULE_COUNT = 5;
+    
+    /**
+     * File drop rule metrics are dumped to.
+     */
+    private final File dumpFile;
+    
+    /**
+     * Creates the command.
+     * @param dumpFile File drop rule metrics are dumped to
+     */
+    public AndesiteCommand(File dumpFile) {
+        this.dumpFile = dumpFile;
+    }
+    
+    /**
+     * Gets the name of the command.
+     * @return The command name
+     */
+    @Override
+    public String getName() {
+        return AndesiteML.MODID;
+    }
+    
+    /**
+     * Gets the usage of the command.
+     * @param sender The command sender
+     * @return The command usage
+     */
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return "/andesite <drops [count|reset|dump]|reload>";
+    }
+    
+    /**
+     * Gets the permission level required to use the command.
+     * @return The permission level
+     */
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+    
+    /**
+     * Executes the command.
+     * @param sender The command sender
+     * @param args The command arguments
+     * @throws CommandException If the arguments are invalid
+     */
+    @Override
+    public void execute(ICommandSender sender, String[] args) throws CommandException {
+        if (args.length == 1 && "reload".equals(args[0])) {
+            PackageWatcher watcher = AndesiteML.getWatcher();
+            if (watcher == null) {
+                throw new CommandException("Hot reload is disabled in the Andesite Mod Loader configuration");
+            }
+            if (watcher.getSide() == Side.CLIENT) {
+                // Commands run on the integrated server thread; reloads must run on the client thread
+                watcher.requestPoll();
+                sender.addChatMessage(new ChatComponentText("Reloading changed packages on the next client tick"));
+            } else {
+                sender.addChatMessage(new ChatComponentText("Reloaded " + watcher.poll() + " changed packages"));
+            }
+            return;
+        }
+        if (args.length < 1 || !"drops".equals(args[0])) {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+        DropMetrics metrics = DropDispatcher.instance().getMetrics();
+        if (args.length > 1 && "reset".equals(args[1])) {
+            metrics.reset();
+            sender.addChatMessage(new ChatComponentText("Drop rule metrics reset"));
+        } else if (args.length > 1 && "dump".equals(args[1])) {
+            try {
+                metrics.write(this.dumpFile);
+                sender.addChatMessage(new ChatComponentText("Drop rule metrics written to " + this.dumpFile.getPath()));
+            } catch (IOException e) {
+                throw new CommandException("Could not write drop rule metrics: " + e.getMessage());
+            }
+        } else {
+            int count = args.length > 1 ? parseInt(args[1], 1) : DEFAULT_RULE_COUNT;
+            for (String line : metrics.report(count)) {
+                sender.addChatMessage(new ChatComponentText(line));
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraftforge.common.config.Configuration;
+
+import org.apache.logging.log4j.Level;
+
+/**
+ * Andesite Mod Loader configuration.
+ * @author Marius
+ */
+public class AndesiteConfig {
+    
+    /**
+     * Configuration category for mod package loading.
+     */
+    public static final String CATEGORY_LOADING = "loading";
+    /**
+     * Configuration category for runtime metrics.
+     */
+    public static final String CATEGORY_METRICS = "metrics";
+    /**
+     * Configuration category for logging.
+     */
+    public static final String CATEGORY_LOGGING = "logging";
+    
+    /**
+     * Number of worker threads used to read and verify mod packages.
+     */
+    private int loaderThreads = defaultLoaderThreads();
+    /**
+     * Whether verified packages are cached between launches.
+     */
+    private boolean verificationCache = true;
+    /**
+     * Maximum total size in MiB of packages decrypted at the same time, or 0 for no limit.
+     */
+    private int readBudget = 64;
+    /**
+     * Whether block property changes are batched and applied once at the end of loading.
+     */
+    private boolean batchPropertyChanges = true;
+    /**
+     * Mod priorities by mod ID.
+     */
+    private Map<String, Integer> modPriorities = Collections.emptyMap();
+    /**
+     * Whether the load profile is written to disk after loading.
+     */
+    private boolean writeLoadProfile = true;
+    /**
+     * Whether deferrable actions are executed just before the world loads instead of during start-up.
+     */
+    private boolean lazyActions = false;
+    /**
+     * Class names of actions that may be deferred.
+     */
+    private List<String> deferrableActions = Collections.emptyList();
+    /**
+     * Whether state only needed while loading is released afterwards.
+     */
+    private boolean releaseLoadState = true;
+    /**
+     * Whether the heap freed by releasing load state is measured.
+     */
+    private boolean measureHeap = false;
+    /**
+     * Whether changed mod packages are reloaded while the game is running.
+     */
+    private boolean hotReload = false;
+    /**
+     * Number of ticks between checks for changed mod packages.
+     */
+    private int hotReloadInterval = 20;
+    /**
+     * Whether log messages are written by a background thread.
+     */
+    private boolean asyncLogging = true;
+    /**
+     * Maximum number of log messages waiting for the background thread.
+     */
+    private int logQueueSize = 4096;
+    /**
+     * Most verbose log level written for each mod, by mod ID.
+     */
+    private Map<String, Level> modLogLevels = Collections.emptyMap();
+    /**
+     * Whether drop rule evaluations are counted and timed.
+     */
+    private boolean dropMetrics = true;
+    /**
+     * Number of server ticks between drop rule metrics dumps, or 0 to disable dumping.
+     */
+    private int dropMetricsDumpInterval = 0;
+    
+    /**
+     * Creates a configuration with default values.
+     */
+    public AndesiteConfig() {
+    }
+    
+    /**
+     * Loads the configuration from the given file, writing defaults for any missing values.
+     * @param file The configuration file
+     * @return The loaded configuration
+     */
+    public static AndesiteConfig load(File file) {
+        Configuration config = new Configuration(file);
+        config.load();
+        AndesiteConfig ac = new AndesiteConfig();
+        ac.loaderThreads = config.getInt("loaderThreads", CATEGORY_LOADING, ac.loaderThreads, 1, 64, "Number of worker threads used to read, decrypt and verify mod packages");
+        ac.verificationCache = config.getBoolean("verificationCache", CATEGORY_LOADING, ac.verificationCache, "Cache verified packages so unchanged packages skip signature checks on the next launch");
+        ac.readBudget = config.getInt("readBudget", CATEGORY_LOADING, ac.readBudget, 0, 4096, "Maximum total size in MiB of mod packages decrypted at the same time, limiting peak memory use while loading; 0 for no limit");
+        ac.batchPropertyChanges = config.getBoolean("batchPropertyChanges", CATEGORY_LOADING, ac.batchPropertyChanges, "Record block property changes and apply each block once after all mods have loaded");
+        ac.modPriorities = parsePriorities(config.getStringList("modPriorities", CATEGORY_LOADING, new String[0], "Mod priorities as modid=priority; when mods change the same block property, the highest priority wins, then the mod loaded last"));
+        ac.writeLoadProfile = config.getBoolean("writeLoadProfile", CATEGORY_LOADING, ac.writeLoadProfile, "Write per-package, per-stage and per-action load times to andesite/load-profile.json");
+        ac.lazyActions = config.getBoolean("lazyActions", CATEGORY_LOADING, ac.lazyActions, "Execute the actions listed in deferrableActions after start-up instead of during it: on the first client tick, or before a dedicated server loads its world");
+        ac.deferrableActions = Arrays.asList(config.getStringList("deferrableActions", CATEGORY_LOADING, new String[0], "Fully qualified class names of actions that only affect blocks in the world and may be deferred; deferred actions run after all other actions"));
+        ac.releaseLoadState = config.getBoolean("releaseLoadState", CATEGORY_LOADING, ac.releaseLoadState, "Once all actions have run, release caches only needed while loading, and log the estimated size of the drop rules kept per mod");
+        ac.measureHeap = config.getBoolean("measureHeap", CATEGORY_LOADING, ac.measureHeap, "Run a full garbage collection before and after releasing load state to log the heap freed; slows down start-up");
+        ac.hotReload = config.getBoolean("hotReload", CATEGORY_LOADING, ac.hotReload, "Watch the mod directory and reload added, changed and removed mod packages while the game is running");
+        ac.hotReloadInterval = config.getInt("hotReloadInterval", CATEGORY_LOADING, ac.hotReloadInterval, 1, 1200, "Client ticks, or server ticks on a dedicated server, between checks for changed mod packages");
+        ac.asyncLogging = config.getBoolean("asyncLogging", CATEGORY_LOGGING, ac.asyncLogging, "Format and write log messages on a background thread");
+        ac.logQueueSize = config.getInt("logQueueSize", CATEGORY_LOGGING, ac.logQueueSize, 16, 1048576, "Maximum number of log messages waiting to be written; when full, logging waits for room");
+        ac.modLogLevels = parseLogLevels(config.getStringList("modLogLevels", CATEGORY_LOGGING, new String[0], "Most verbose log level per mod as modid=LEVEL, for example verbosemod=WARN"));
+        ac.dropMetrics = config.getBoolean("dropMetrics", CATEGORY_METRICS, ac.dropMetrics, "Count and time drop rule evaluations; see /andesite drops");
+        ac.dropMetricsDumpInterval = config.getInt("dropMetricsDumpInterval", CATEGORY_METRICS, ac.dropMetricsDumpInterval, 0, 1728000, "Server ticks between writing drop rule metrics to andesite/drop-metrics.txt, or 0 to only write them on /andesite drops dump");
+        if (config.hasChanged()) {
+            config.save();
+        }
+        return ac;
+    }
+    
+    /**
+     * Gets the number of worker threads used to read and verify mod packages.
+     * @return Number of loader threads
+     */
+    public int getLoaderThreads() {
+        return this.loaderThreads;
+    }
+    
+    /**
+     * Checks whether verified packages are cached between launches.
+     * @return True if the verification cache is enabled
+     */
+    public boolean isVerificationCacheEnabled() {
+        return this.verificationCache;
+    }
+    
+    /**
+     * Gets the maximum total size of packages decrypted at the same time.
+     * @return Read budget in bytes, or 0 for no limit
+     */
+    public long getReadBudget() {
+        return this.readBudget * 1024L * 1024L;
+    }
+    
+    /**
+     * Checks whether block property changes are batched.
+     * @return True if property changes are applied once at the end of loading
+     */
+    public boolean isBatchingPropertyChanges() {
+        return this.batchPropertyChanges;
+    }
+    
+    /**
+     * Gets the configured mod priorities.
+     * @return Mod priorities by mod ID
+     */
+    public Map<String, Integer> getModPriorities() {
+        return this.modPriorities;
+    }
+    
+    /**
+     * Checks whether the load profile is written to disk after loading.
+     * @return True if the load profile report is written
+     */
+    public boolean isWritingLoadProfile() {
+        return this.writeLoadProfile;
+    }
+    
+    /**
+     * Gets the class names of actions executed just before the world loads.
+     * @return Deferrable action class names, or an empty list if lazy actions are disabled
+     */
+    public List<String> getDeferredActions() {
+        return this.lazyActions ? this.deferrableActions : Collections.<String>emptyList();
+    }
+    
+    /**
+     * Checks whether log messages are written by a background thread.
+     * @return True if asynchronous logging is enabled
+     */
+    public boolean isAsyncLogging() {
+        return this.asyncLogging;
+    }
+    
+    /**
+     * Gets the maximum number of log messages waiting for the background thread.
+     * @return Log queue capacity
+     */
+    public int getLogQueueSize() {
+        return this.logQueueSize;
+    }
+    
+    /**
+     * Gets the most verbose log level written for each mod.
+     * @return Log levels by mod ID
+     */
+    public Map<String, Level> getModLogLevels() {
+        return this.modLogLevels;
+    }
+    
+    /**
+     * Checks whether state only needed while loading is released afterwards.
+     * @return True if load state is released
+     */
+    public boolean isReleasingLoadState() {
+        return this.releaseLoadState;
+    }
+    
+    /**
+     * Checks whether the heap freed by releasing load state is measured.
+     * @return True if the heap is measured with a full garbage collection
+     */
+    public boolean isMeasuringHeap() {
+        return this.measureHeap;
+    }
+    
+    /**
+     * Checks whether changed mod packages are reloaded while the game is running.
+     * @return True if hot reload is enabled
+     */
+    public boolean isHotReloadEnabled() {
+        return this.hotReload;
+    }
+    
+    /**
+     * Gets the number of ticks between checks for changed mod packages.
+     * @return Hot reload interval in ticks
+     */
+    public int getHotReloadInterval() {
+        return this.hotReloadInterval;
+    }
+    
+    /**
+     * Checks whether drop rule evaluations are counted and timed.
+     * @return True if drop rule metrics are enabled
+     */
+    public boolean isDropMetricsEnabled() {
+        return this.dropMetrics;
+    }
+    
+    /**
+     * Gets the number of server ticks between drop rule metrics dumps.
+     * @return Dump interval in ticks, or 0 if periodic dumping is disabled
+     */
+    public int getDropMetricsDumpInterval() {
+        return this.dropMetricsDumpInterval;
+    }
+    
+    /**
+     * Parses mod priorities.
+     * @param entries Entries in modid=priority form
+     * @return Mod priorities by mod ID
+     */
+    private static Map<String, Integer> parsePriorities(String[] entries) {
+        Map<String, Integer> priorities = new HashMap<String, Integer>();
+        for (String entry : entries) {
+            int sep = entry.indexOf('=');
+            if (sep <= 0) {
+                continue;
+            }
+            try {
+                priorities.put(entry.substring(0, sep).trim(), Integer.parseInt(entry.substring(sep + 1).trim()));
+            } catch (NumberFormatException e) {
+                AndesiteML.warn("Ignoring malformed mod priority " + entry);
+            }
+        }
+        return priorities;
+    }
+    
+    /**
+     * Parses per-mod log levels.
+     * @param entries Entries in modid=LEVEL form
+     * @return Log levels by mod ID
+     */
+    private static Map<String, Level> parseLogLevels(String[] entries) {
+        Map<String, Level> levels = new HashMap<String, Level>();
+        for (String entry : entries) {
+            int sep = entry.indexOf('=');
+            Level level = sep <= 0 ? null : Level.toLevel(entry.substring(sep + 1).trim(), null);
+            if (level == null) {
+                AndesiteML.warn("Ignoring malformed mod log level " + entry);
+                continue;
+            }
+            levels.put(entry.substring(0, sep).trim(), level);
+        }
+        return levels;
+    }
+    
+    /**
+     * Gets the default number of loader threads for this machine.
+     * @return Default number of loader threads
+     */
+    private static int defaultLoaderThreads() {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+    }
+}
@@ -23,32 +23,27 @@
  */
 package info.varden.andesite.modloader;
 
-import info.varden.andesite.core.Action;
-import info.varden.andesite.core.ActionData;
-import info.varden.andesite.core.ActionExecutionContext;
-import info.varden.andesite.core.AndesiteProject;
-import info.varden.andesite.core.wrapper.BlockWrapper;
-import info.varden.andesite.io.AndesiteIO;
-
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SignatureException;
-import java.security.spec.InvalidKeySpecException;
-
-import javax.crypto.BadPaddingException;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
 
-import net.minecraft.client.Minecraft;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.Mod.EventHandler;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
+import net.minecraftforge.fml.common.event.FMLServerAboutToStartEvent;
+import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.relauncher.Side;
 
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
@@ -78,11 +73,39 @@ public class AndesiteML {
     /**
      * Main logger.
      */
-    private static Logger andesiteLog = null;
+    private static Logger andesiteLog = LogManager.getLogger(MODID);
+    /**
+     * Andesite mod currently being loaded by each thread.
+     */
+    private static final ThreadLocal<String> currentlyLoading = new ThreadLocal<String>();
+    /**
+     * Background log writer, or null to write on the calling thread.
+     */
+    private static volatile AsyncLogWriter logWriter = null;
+    /**
+     * Most verbose level written for each mod, by mod ID.
+     */
+    private static volatile Map<String, Level> modLogLevels = Collections.emptyMap();
+    /**
+     * Andesite Mod Loader configuration.
+     */
+    private static AndesiteConfig config = new AndesiteConfig();
+    /**
+     * Measurements of the last package load.
+     */
+    private static LoadProfile loadProfile = null;
+    /**
+     * Loader holding deferred actions, or null once they were executed.
+     */
+    private static PackageLoader deferredLoader = null;
+    /**
+     * Watcher reloading changed mod packages, or null if hot reload is disabled.
+     */
+    private static PackageWatcher watcher = null;
     /**
-     * Currently loading Andesite mod.
+     * The game directory, resolved by FML on both the client and the server.
      */
-    private static String currentlyLoading = null;
+    private static File gameDir = null;
     
     /**
      * Andesite Mod Loader pre-initialization.
@@ -91,6 +114,21 @@ public class AndesiteML {
     @EventHandler
     public void preInit(FMLPreInitializationEvent event) {
         andesiteLog = event.getModLog();
+        gameDir = event.getModConfigurationDirectory().getParentFile();
+        config = AndesiteConfig.load(event.getSuggestedConfigurationFile());
+        modLogLevels = config.getModLogLevels();
+        if (config.isAsyncLogging()) {
+            logWriter = new AsyncLogWriter(andesiteLog, config.getLogQueueSize());
+        }
+        MinecraftForge.EVENT_BUS.register(DropDispatcher.instance());
+        DropMetrics metrics = DropDispatcher.instance().getMetrics();
+        metrics.setEnabled(config.isDropMetricsEnabled());
+        metrics.setDump(getDropMetricsFile(), config.getDropMetricsDumpInterval());
+        FMLCommonHandler.instance().bus().register(metrics);
+        FMLCommonHandler.instance().bus().register(new ForgePlayerWrapper.TickHandler());
+        ForgePlayerWrapper.EvictionHandler eviction = new ForgePlayerWrapper.EvictionHandler();
+        MinecraftForge.EVENT_BUS.register(eviction);
+        FMLCommonHandler.instance().bus().register(eviction);
     }
     
     /**
@@ -99,97 +137,166 @@ public class AndesiteML {
      */
     @EventHandler
     public void postInit(FMLPostInitializationEvent event) {
-        File[] mods = getModDir().listFiles();
-        for (File mod : mods) {
-            if (mod.getName().endsWith(".anp")) {
-                currentlyLoading = null;
-                AndesiteML.info("Reading mod " + mod.getName());
-                try {
-                    AndesiteProject project = AndesiteIO.readSignedPackage(mod);
-                    currentlyLoading = project.properties.modid;
-                    Action[] actions = project.getAllActions();
-                    AndesiteML.info("Found " + actions.length + " actions");
-                    for (int i = 0; i < actions.length; i++) {
-                        AndesiteML.info("Executing action " + (i + 1) + " of " + actions.length);
-                        if (actions[i].getClass().getAnnotation(ActionData.class).version() > ANDESITE_VERSION) {
-                            AndesiteML.warn("Action " + (i + 1) + " is not supported in this version of Andesite Mod Loader. This might cause trouble.");
-                        }
-                        actions[i].execute(new ActionExecutionContext() {
-
-                            /**
-                             * Returns an Andesite block wrapper for the given block ID.
-                             * @param block The block ID to wrap
-                             * @return A block wrapper for use by the Andesite Project
-                             */
-                            @Override
-                            public BlockWrapper getBlockWrapperFor(String block) {
-                                return new ForgeBlockWrapper();
-                            }
-                            
-                        });
-                    }
-                } catch (InvalidKeyException e) {
-                    AndesiteML.error("Failed to read mod package: Package is corrupt: Public key invalid");
-                    e.printStackTrace();
-                } catch (FileNotFoundException e) {
-                    AndesiteML.error("Failed to read mod package: File not found?! It was there a second ago, I swear!! (You shouldn't delete mods while they're being loaded...)");
-                    e.printStackTrace();
-                } catch (IllegalArgumentException e) {
-                    AndesiteML.error("Failed to read mod package: Package is corrupt: Not in Andesite Mod Package format, or an action in the package is corrupt");
-                    e.printStackTrace();
-                } catch (NoSuchAlgorithmException e) {
-                    AndesiteML.error("Failed to read mod package: Missing cryptographic algorithms: Your computer is highly insecure and incapable of reading Andesite mods.");
-                    e.printStackTrace();
-                } catch (InvalidKeySpecException e) {
-                    AndesiteML.error("Failed to read mod package: Missing cryptographic algorithms: Your computer is highly insecure and incapable of reading Andesite mods.");
-                    e.printStackTrace();
-                } catch (NoSuchPaddingException e) {
-                    AndesiteML.error("Failed to read mod package: Missing cryptographic algorithms: Your computer is highly insecure and incapable of reading Andesite mods.");
-                    e.printStackTrace();
-                } catch (IllegalBlockSizeException e) {
-                    AndesiteML.error("Failed to read mod package: Package is corrupt: Block size invalid");
-                    e.printStackTrace();
-                } catch (BadPaddingException e) {
-                    AndesiteML.error("Failed to read mod package: Package is corrupt: The package data is not padded properly");
-                    e.printStackTrace();
-                } catch (ClassCastException e) {
-                    AndesiteML.error("Failed to read mod package: Package is corrupt: Action is not an Action");
-                    e.printStackTrace();
-                } catch (InstantiationException e) {
-                    AndesiteML.error("Failed to read mod package: Andesite Mod Loader is broken: Can not instantiate Action - this is an Andesite Mod Loader bug, please report it");
-                    e.printStackTrace();
-                } catch (IllegalAccessException e) {
-                    AndesiteML.error("Failed to read mod package: Andesite Mod Loader is broken: Can not access Action - this is an Andesite Mod Loader bug, please report it");
-                    e.printStackTrace();
-                } catch (InvocationTargetException e) {
-                    AndesiteML.error("Failed to read mod package: Andesite Mod Loader is broken: Action constructor fails to invoke - this is an Andesite Mod Loader bug, please report it");
-                    e.printStackTrace();
-                } catch (SecurityException e) {
-                    AndesiteML.error("Failed to read mod package: Andesite Mod Loader is broken: Action cannot be read - this is an Andesite Mod Loader bug, please report it");
-                    e.printStackTrace();
-                } catch (NoSuchMethodException e) {
-                    AndesiteML.error("Failed to read mod package: Andesite Mod Loader is broken: Action does not support instantiation - this is an Andesite Mod Loader bug, please report it");
-                    e.printStackTrace();
-                } catch (SignatureException e) {
-                    AndesiteML.error("Failed to read mod package: Impersonation: Hash does not match content - SOMEONE HAS TAMPERED WITH THIS MOD!! Mod will not be loaded.");
-                    e.printStackTrace();
-                } catch (IOException e) {
-                    AndesiteML.error("Failed to read mod package: Input/output error: Unspecified error while reading the file. Please ensure you did not disconnect or remove the media the mod file was stored on while the game was loading");
-                    e.printStackTrace();
-                }
+        VerifiedPackageCache cache = config.isVerificationCacheEnabled() ? new VerifiedPackageCache(getCacheDir()) : null;
+        PackageLoader loader = new PackageLoader(getModDir(), config.getLoaderThreads(), cache);
+        BlockWrapperRegistry blocks = new BlockWrapperRegistry(config.isBatchingPropertyChanges(), config.getModPriorities());
+        blocks.setSkippingClientOnly(event.getSide() == Side.SERVER);
+        ForgeActionExecutionContext context = new ForgeActionExecutionContext(blocks);
+        loader.setDeferrableActions(config.getDeferredActions());
+        loader.setReadBudget(config.getReadBudget());
+        loader.addListener(context);
+        loader.load(context);
+        if (loader.getDeferredCount() > 0) {
+            info("Deferred " + loader.getDeferredCount() + " actions until the world loads");
+            deferredLoader = loader;
+            if (event.getSide() == Side.CLIENT) {
+                FMLCommonHandler.instance().bus().register(new ClientTickHandler());
+            }
+        }
+        if (config.isHotReloadEnabled()) {
+            if (!config.isBatchingPropertyChanges()) {
+                warn("Hot reload needs batchPropertyChanges to undo block property changes; reloaded mods will only remove their drop rules");
             }
+            watcher = new PackageWatcher(loader, config.getHotReloadInterval(), event.getSide());
+            FMLCommonHandler.instance().bus().register(watcher);
+        }
+        loadProfile = loader.getProfile();
+        if (config.isWritingLoadProfile() && loadProfile != null) {
+            File report = new File(getDataDir(), "load-profile.json");
+            try {
+                loadProfile.write(report);
+                info("Wrote load profile to " + report.getPath());
+            } catch (IOException e) {
+                warn("Could not write load profile to " + report.getPath() + ": " + e.getMessage());
+            }
+        }
+        if (deferredLoader == null) {
+            releaseLoadState();
+        }
+    }
+    
+    /**
+     * Runs deferred actions before the first world of a dedicated server is
+     * loaded. Clients run them from {@link ClientTickHandler} instead, on the
+     * main thread, since an integrated server starts on its own thread and a
+     * client joining a remote server never starts one.
+     * @param event FML server about to start event
+     */
+    @EventHandler
+    public void serverAboutToStart(FMLServerAboutToStartEvent event) {
+        if (event.getSide() == Side.SERVER) {
+            runDeferredActions();
+        }
+    }
+    
+    /**
+     * Runs the deferred actions, unless they already ran.
+     */
+    private static synchronized void runDeferredActions() {
+        if (deferredLoader == null) {
+            return;
+        }
+        int count = deferredLoader.runDeferredActions();
+        info("Executed " + count + " deferred actions");
+        deferredLoader = null;
+        releaseLoadState();
+    }
+    
+    /**
+     * Releases the state only needed while loading that would otherwise be
+     * kept for the life of the game: the item resolution and interning
+     * caches. The load profile is kept, since {@link #getLoadProfile()}
+     * exposes it. Logs the estimated size of the drop rules kept for each
+     * mod, and the measured heap difference if heap measuring is enabled.
+     */
+    private static void releaseLoadState() {
+        if (!config.isReleasingLoadState()) {
+            return;
+        }
+        boolean measured = config.isMeasuringHeap();
+        long before = measured ? usedHeap() : 0L;
+        ForgeItemStackTranslator.clearCache();
+        Map<String, Long> retained = new TreeMap<String, Long>();
+        DropDispatcher.instance().estimateRetained(retained);
+        for (Map.Entry<String, Long> entry : retained.entrySet()) {
+            info("Retaining about {} bytes of drop rules for {}", entry.getValue(), entry.getKey());
+        }
+        if (measured) {
+            long after = usedHeap();
+            info("Released " + ((before - after) / 1024L) + " KiB of load state; " + (after / 1024L) + " KiB of heap in use after loading");
+        }
+    }
+    
+    /**
+     * Measures the heap in use after a full garbage collection.
+     * @return Used heap in bytes
+     */
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+    
+    /**
+     * Andesite Mod Loader server start.
+     * @param event FML server starting event
+     */
+    @EventHandler
+    public void serverStarting(FMLServerStartingEvent event) {
+        event.registerServerCommand(new AndesiteCommand(getDropMetricsFile()));
+    }
+    
+    /**
+     * Gets the watcher reloading changed mod packages.
+     * @return The package watcher, or null if hot reload is disabled
+     */
+    public static PackageWatcher getWatcher() {
+        return watcher;
+    }
+    
+    /**
+     * Gets the measurements of the last package load.
+     * @return The load profile, or null if packages were not loaded yet
+     */
+    public static LoadProfile getLoadProfile() {
+        return loadProfile;
+    }
+    
+    /**
+     * Sets the Andesite mod the calling thread is loading, used as the log line prefix.
+     * @param modid The mod ID, or null when no mod is being loaded
+     */
+    static void setCurrentlyLoading(String modid) {
+        currentlyLoading.set(modid);
+    }
+    
+    /**
+     * Checks whether messages of a level are written for the mod the calling thread is loading.
+     * @param level The message level
+     * @return True if a message of the level would be written
+     */
+    public static boolean isEnabled(Level level) {
+        if (!andesiteLog.isEnabled(level)) {
+            return false;
         }
+        String modid = currentlyLoading.get();
+        Level limit = modid == null ? null : modLogLevels.get(modid);
+        return limit == null || level.intLevel() <= limit.intLevel();
     }
     
     /**
-     * Gets the line prefix for the main logger.
-     * @return Line prefix
+     * Writes an enabled message to the logger, through the log writer if there is one.
+     * @param level The message level
+     * @param pattern The message, or a pattern with {} placeholders
+     * @param args Pattern arguments, or null if the message is not a pattern
+     * @param thrown The exception to log with the message, or null
      */
-    private static String getLogPrefix() {
-        if (currentlyLoading == null) {
-            return "<core>: ";
+    private static void write(Level level, String pattern, Object[] args, Throwable thrown) {
+        AsyncLogWriter writer = logWriter;
+        if (writer != null) {
+            writer.write(level, currentlyLoading.get(), pattern, args, thrown);
+        } else {
+            andesiteLog.log(level, AsyncLogWriter.format(currentlyLoading.get(), pattern, args), thrown);
         }
-        return "[" + currentlyLoading + "] ";
     }
     
     /**
@@ -197,7 +304,32 @@ public class AndesiteML {
      * @param msg The message to write
      */
     public static void info(String msg) {
-        andesiteLog.info(getLogPrefix() + msg);
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, msg, null, null);
+        }
+    }
+    
+    /**
+     * Writes an information level message with one argument to the logger.
+     * @param pattern The message pattern, with {} as placeholder
+     * @param arg The argument, only formatted if the message is written
+     */
+    public static void info(String pattern, Object arg) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, pattern, new Object[] { arg }, null);
+        }
+    }
+    
+    /**
+     * Writes an information level message with two arguments to the logger.
+     * @param pattern The message pattern, with {} as placeholders
+     * @param arg1 The first argument, only formatted if the message is written
+     * @param arg2 The second argument, only formatted if the message is written
+     */
+    public static void info(String pattern, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, pattern, new Object[] { arg1, arg2 }, null);
+        }
     }
     
     /**
@@ -205,7 +337,32 @@ public class AndesiteML {
      * @param msg The message to write
      */
     public static void warn(String msg) {
-        andesiteLog.warn(getLogPrefix() + msg);
+        if (isEnabled(Level.WARN)) {
+            write(Level.WARN, msg, null, null);
+        }
+    }
+    
+    /**
+     * Writes a warning level message with one argument to the logger.
+     * @param pattern The message pattern, with {} as placeholder
+     * @param arg The argument, only formatted if the message is written
+     */
+    public static void warn(String pattern, Object arg) {
+        if (isEnabled(Level.WARN)) {
+            write(Level.WARN, pattern, new Object[] { arg }, null);
+        }
+    }
+    
+    /**
+     * Writes a warning level message with two arguments to the logger.
+     * @param pattern The message pattern, with {} as placeholders
+     * @param arg1 The first argument, only formatted if the message is written
+     * @param arg2 The second argument, only formatted if the message is written
+     */
+    public static void warn(String pattern, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) {
+            write(Level.WARN, pattern, new Object[] { arg1, arg2 }, null);
+        }
     }
     
     /**
@@ -213,7 +370,43 @@ public class AndesiteML {
      * @param msg The message to write
      */
     public static void error(String msg) {
-        andesiteLog.error(getLogPrefix() + msg);
+        if (isEnabled(Level.ERROR)) {
+            write(Level.ERROR, msg, null, null);
+        }
+    }
+    
+    /**
+     * Writes an error level message and an exception to the logger.
+     * @param msg The message to write
+     * @param thrown The exception, written with its stack trace
+     */
+    public static void error(String msg, Throwable thrown) {
+        if (isEnabled(Level.ERROR)) {
+            write(Level.ERROR, msg, null, thrown);
+        }
+    }
+    
+    /**
+     * Writes an error level message with one argument to the logger.
+     * @param pattern The message pattern, with {} as placeholder
+     * @param arg The argument, only formatted if the message is written
+     */
+    public static void error(String pattern, Object arg) {
+        if (isEnabled(Level.ERROR)) {
+            write(Level.ERROR, pattern, new Object[] { arg }, null);
+        }
+    }
+    
+    /**
+     * Writes an error level message with two arguments to the logger.
+     * @param pattern The message pattern, with {} as placeholders
+     * @param arg1 The first argument, only formatted if the message is written
+     * @param arg2 The second argument, only formatted if the message is written
+     */
+    public static void error(String pattern, Object arg1, Object arg2) {
+        if (isEnabled(Level.ERROR)) {
+            write(Level.ERROR, pattern, new Object[] { arg1, arg2 }, null);
+        }
     }
     
     /**
@@ -221,6 +414,49 @@ public class AndesiteML {
      * @return Directory containing Andesite mods
      */
     private static File getModDir() {
-        return new File(Minecraft.getMinecraft().mcDataDir, "mods");
+        return new File(gameDir, "mods");
+    }
+    
+    /**
+     * Returns the Andesite verification cache directory.
+     * @return Directory containing cached verified packages
+     */
+    private static File getCacheDir() {
+        return new File(getDataDir(), "cache");
+    }
+    
+    /**
+     * Returns the file drop rule metrics are dumped to.
+     * @return Drop rule metrics file
+     */
+    private static File getDropMetricsFile() {
+        return new File(getDataDir(), "drop-metrics.txt");
+    }
+    
+    /**
+     * Returns the Andesite Mod Loader data directory.
+     * @return Directory containing Andesite Mod Loader state
+     */
+    private static File getDataDir() {
+        return new File(gameDir, "andesite");
+    }
+    
+    /**
+     * Runs the deferred actions on the client main thread at the first client
+     * tick, before any world, integrated or remote, can be loaded.
+     */
+    public static class ClientTickHandler {
+        
+        /**
+         * FML client tick event handler running the deferred actions once.
+         * @param event FML tick event
+         */
+        @SubscribeEvent
+        public void clientTick(TickEvent.ClientTickEvent event) {
+            if (event.phase == TickEvent.Phase.START) {
+                runDeferredActions();
+                FMLCommonHandler.instance().bus().unregister(this);
+            }
+        }
     }
 }
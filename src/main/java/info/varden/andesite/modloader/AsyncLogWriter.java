@@ -0,0 +1,258 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+
+/**
+ * Background writer formatting and forwarding log messages to a logger.
+ * <p>
+ * Callers only enqueue the message pattern and its arguments; prefixing and
+ * formatting happen on the writer thread. When the queue is full, the caller
+ * waits for room, so messages are always written in the order they were
+ * logged. Arguments are formatted later, so they should not be mutated after
+ * logging.
+ * <p>
+ * At shutdown the writer thread is stopped and joined before the messages
+ * still queued are written, so none are lost or written twice. Messages
+ * logged after that are written on the calling thread.
+ * @author Marius
+ */
+public class AsyncLogWriter implements Runnable {
+    
+    /**
+     * Time a caller waits for room in a full queue before checking whether
+     * the writer was stopped, in milliseconds.
+     */
+    private static final long OFFER_TIMEOUT = 100L;
+    /**
+     * Time the shutdown hook waits for the writer thread to stop, in milliseconds.
+     */
+    private static final long JOIN_TIMEOUT = 1000L;
+    
+    /**
+     * The logger messages are forwarded to.
+     */
+    private final Logger logger;
+    /**
+     * Messages waiting to be written.
+     */
+    private final BlockingQueue<Record> queue;
+    /**
+     * The writer thread.
+     */
+    private final Thread thread;
+    /**
+     * Number of messages whose caller had to wait because the queue was full.
+     */
+    private final AtomicLong overflows = new AtomicLong();
+    /**
+     * Whether the writer thread was stopped.
+     */
+    private volatile boolean stopped = false;
+    
+    /**
+     * Creates a writer and starts its thread.
+     * @param logger The logger messages are forwarded to
+     * @param capacity Maximum number of queued messages
+     */
+    public AsyncLogWriter(Logger logger, int capacity) {
+        this.logger = logger;
+        this.queue = new ArrayBlockingQueue<Record>(Math.max(1, capacity));
+        this.thread = new Thread(this, "Andesite Log Writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread("Andesite Log Flush") {
+            @Override
+            public void run() {
+                shutdown();
+            }
+        });
+    }
+    
+    /**
+     * Queues a message.
+     * @param level The message level
+     * @param modid ID of the mod the message belongs to, or null for the core
+     * @param pattern The message, or a pattern with {} placeholders
+     * @param args Pattern arguments, or null if the message is not a pattern
+     * @param thrown The exception to log with the message, or null
+     */
+    public void write(Level level, String modid, String pattern, Object[] args, Throwable thrown) {
+        Record record = new Record(level, modid, pattern, args, thrown);
+        if (!this.stopped && enqueue(record)) {
+            if (this.stopped) {
+                // The writer stopped while the message was queued
+                flush();
+            }
+            return;
+        }
+        synchronized (this) {
+            flush();
+            emit(record);
+        }
+    }
+    
+    /**
+     * Queues a message, waiting for room while the queue is full.
+     * @param record The message
+     * @return True if the message was queued, false if the writer was stopped or the caller interrupted
+     */
+    private boolean enqueue(Record record) {
+        if (this.queue.offer(record)) {
+            return true;
+        }
+        this.overflows.incrementAndGet();
+        try {
+            while (!this.stopped) {
+                if (this.queue.offer(record, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+    
+    /**
+     * Stops the writer thread, waits for it to finish and writes the messages
+     * still queued on the calling thread.
+     */
+    public void shutdown() {
+        this.stopped = true;
+        this.thread.interrupt();
+        try {
+            this.thread.join(JOIN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+    
+    /**
+     * Writes all queued messages on the calling thread.
+     */
+    public synchronized void flush() {
+        List<Record> pending = new ArrayList<Record>();
+        this.queue.drainTo(pending);
+        for (Record record : pending) {
+            emit(record);
+        }
+    }
+    
+    /**
+     * Gets the number of messages whose caller had to wait because the queue was full.
+     * @return Number of queue overflows
+     */
+    public long getOverflows() {
+        return this.overflows.get();
+    }
+    
+    /**
+     * Writes queued messages until the thread is interrupted.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                emit(this.queue.take());
+            }
+        } catch (InterruptedException e) {
+            // The shutdown hook writes the remaining messages after joining this thread
+        }
+    }
+    
+    /**
+     * Formats and writes a message.
+     * @param record The message
+     */
+    private void emit(Record record) {
+        this.logger.log(record.level, format(record.modid, record.pattern, record.args), record.thrown);
+    }
+    
+    /**
+     * Formats a log line.
+     * @param modid ID of the mod the message belongs to, or null for the core
+     * @param pattern The message, or a pattern with {} placeholders
+     * @param args Pattern arguments, or null if the message is not a pattern
+     * @return The prefixed, formatted line
+     */
+    public static String format(String modid, String pattern, Object[] args) {
+        String prefix = modid == null ? "<core>: " : "[" + modid + "] ";
+        return prefix + (args == null ? pattern : new ParameterizedMessage(pattern, args).getFormattedMessage());
+    }
+    
+    /**
+     * A queued log message.
+     */
+    private static class Record {
+        
+        /**
+         * The message level.
+         */
+        final Level level;
+        /**
+         * ID of the mod the message belongs to, or null for the core.
+         */
+        final String modid;
+        /**
+         * The message, or a pattern with {} placeholders.
+         */
+        final String pattern;
+        /**
+         * Pattern arguments, or null.
+         */
+        final Object[] args;
+        /**
+         * The exception logged with the message, or null.
+         */
+        final Throwable thrown;
+        
+        /**
+         * Creates a queued message.
+         * @param level The message level
+         * @param modid ID of the mod the message belongs to, or null for the core
+         * @param pattern The message, or a pattern with {} placeholders
+         * @param args Pattern arguments, or null
+         * @param thrown The exception logged with the message, or null
+         */
+        Record(Level level, String modid, String pattern, Object[] args, Throwable thrown) {
+            this.level = level;
+            this.modid = modid;
+            this.pattern = pattern;
+            this.args = args;
+            this.thrown = thrown;
+        }
+    }
+}
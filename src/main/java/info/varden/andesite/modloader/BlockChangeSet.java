@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Property changes recorded for a single block during a batched load.
+ * <p>
+ * The value each property had before it was first changed is kept, so the
+ * changes of a mod can be undone when it is reloaded.
+ * @author Marius
+ */
+public class BlockChangeSet {
+    
+    /**
+     * Order properties are written in. Setting the hardness of a block also
+     * raises its resistance, so hardness is written before resistance.
+     */
+    private static final BlockProperty[] WRITE_ORDER = {
+        BlockProperty.LIGHT_LEVEL,
+        BlockProperty.STEP_SOUND,
+        BlockProperty.HARDNESS,
+        BlockProperty.RESISTANCE,
+        BlockProperty.SLIPPERINESS,
+        BlockProperty.PARTICLE_GRAVITY
+    };
+    
+    /**
+     * The block the changes apply to.
+     */
+    private final ForgeBlockWrapper wrapper;
+    /**
+     * Recorded changes by property, in recording order.
+     */
+    private final Map<BlockProperty, List<PropertyChange>> changes = new EnumMap<BlockProperty, List<PropertyChange>>(BlockProperty.class);
+    /**
+     * Values of the block properties before they were first changed.
+     */
+    private final Map<BlockProperty, Object> originals = new EnumMap<BlockProperty, Object>(BlockProperty.class);
+    
+    /**
+     * Creates an empty change set.
+     * @param wrapper The block the changes apply to
+     */
+    public BlockChangeSet(ForgeBlockWrapper wrapper) {
+        this.wrapper = wrapper;
+    }
+    
+    /**
+     * Gets the block the changes apply to.
+     * @return The block wrapper
+     */
+    public ForgeBlockWrapper getWrapper() {
+        return this.wrapper;
+    }
+    
+    /**
+     * Records a property change.
+     * @param change The change to record
+     */
+    public void record(PropertyChange change) {
+        List<PropertyChange> list = this.changes.get(change.property);
+        if (list == null) {
+            list = new ArrayList<PropertyChange>(2);
+            this.changes.put(change.property, list);
+        }
+        list.add(change);
+    }
+    
+    /**
+     * Removes all changes made by a mod.
+     * @param modid The mod ID
+     * @return True if any change was removed
+     */
+    public boolean removeChangesOf(String modid) {
+        boolean removed = false;
+        Iterator<List<PropertyChange>> lists = this.changes.values().iterator();
+        while (lists.hasNext()) {
+            List<PropertyChange> list = lists.next();
+            Iterator<PropertyChange> it = list.iterator();
+            while (it.hasNext()) {
+                PropertyChange change = it.next();
+                if (modid == null ? change.modid == null : modid.equals(change.modid)) {
+                    it.remove();
+                    removed = true;
+                }
+            }
+            if (list.isEmpty()) {
+                lists.remove();
+            }
+        }
+        return removed;
+    }
+    
+    /**
+     * Checks whether the original value of a property was saved.
+     * @param property The property
+     * @return True if the value before the first change is known
+     */
+    public boolean hasOriginal(BlockProperty property) {
+        return this.originals.containsKey(property);
+    }
+    
+    /**
+     * Saves the value of a property before it is first changed.
+     * @param property The property
+     * @param value The unchanged value
+     */
+    public void setOriginal(BlockProperty property, Object value) {
+        this.originals.put(property, value);
+    }
+    
+    /**
+     * Gets the value of a property before it was first changed.
+     * @param property The property
+     * @return The unchanged value
+     */
+    public Object getOriginal(BlockProperty property) {
+        return this.originals.get(property);
+    }
+    
+    /**
+     * Gets all changes recorded for a property.
+     * @param property The property
+     * @return Recorded changes in recording order, or null if there are none
+     */
+    public List<PropertyChange> getChanges(BlockProperty property) {
+        return this.changes.get(property);
+    }
+    
+    /**
+     * Gets the winning change for a property.
+     * @param property The property
+     * @return The winning change, or null if the property was not changed
+     */
+    public PropertyChange getWinner(BlockProperty property) {
+        List<PropertyChange> list = this.changes.get(property);
+        if (list == null) {
+            return null;
+        }
+        PropertyChange winner = null;
+        for (PropertyChange change : list) {
+            if (winner == null || change.beats(winner)) {
+                winner = change;
+            }
+        }
+        return winner;
+    }
+    
+    /**
+     * Gets the properties with recorded changes.
+     * @return Changed properties
+     */
+    public Iterable<BlockProperty> getProperties() {
+        return this.changes.keySet();
+    }
+    
+    /**
+     * Gets the properties that were ever changed, including properties whose
+     * changes were all removed, in the order they must be written.
+     * @return Properties with a saved original value
+     */
+    public Iterable<BlockProperty> getTouchedProperties() {
+        List<BlockProperty> touched = new ArrayList<BlockProperty>(this.originals.size());
+        for (BlockProperty property : WRITE_ORDER) {
+            if (this.originals.containsKey(property)) {
+                touched.add(property);
+            }
+        }
+        return touched;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+/**
+ * Block properties that actions can change.
+ * @author Marius
+ */
+public enum BlockProperty {
+    /**
+     * Block light level.
+     */
+    LIGHT_LEVEL("light level", false),
+    /**
+     * Block step sound.
+     */
+    STEP_SOUND("step sound", false),
+    /**
+     * Block explosion resistance.
+     */
+    RESISTANCE("resistance", false),
+    /**
+     * Block hardness.
+     */
+    HARDNESS("hardness", false),
+    /**
+     * Block slipperiness.
+     */
+    SLIPPERINESS("slipperiness", false),
+    /**
+     * Block particle gravity.
+     */
+    PARTICLE_GRAVITY("particle gravity", true);
+    
+    /**
+     * Human readable property name.
+     */
+    private final String displayName;
+    /**
+     * Whether the property only affects rendering on the client.
+     */
+    private final boolean clientOnly;
+    
+    /**
+     * Creates a block property.
+     * @param displayName Human readable property name
+     * @param clientOnly Whether the property only affects the client
+     */
+    private BlockProperty(String displayName, boolean clientOnly) {
+        this.displayName = displayName;
+        this.clientOnly = clientOnly;
+    }
+    
+    /**
+     * Checks whether the property only affects rendering on the client, so a
+     * dedicated server can skip it. Step sounds are not client-only, since
+     * the server picks and broadcasts place and step sounds.
+     * @return True if the property is client-only
+     */
+    public boolean isClientOnly() {
+        return this.clientOnly;
+    }
+    
+    /**
+     * Gets the human readable property name.
+     * @return Property name
+     */
+    @Override
+    public String toString() {
+        return this.displayName;
+    }
+}
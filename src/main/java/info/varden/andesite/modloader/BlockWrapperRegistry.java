@@ -0,0 +1,344 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.minecraft.block.Block;
+
+/**
+ * Interning registry of block wrappers.
+ * <p>
+ * Every block ID is looked up in the game registry once, and all actions
+ * touching the same block share a single wrapper.
+ * <p>
+ * In batched mode, property changes made through the wrappers are recorded
+ * per block instead of being written through. When loading is done, the
+ * changes are merged (highest mod priority wins, then the last writer) and
+ * each block is written exactly once. Recorded changes are kept after they
+ * were applied, so the changes of a single mod can later be removed and the
+ * affected blocks re-merged, or restored to their original values.
+ * @author Marius
+ */
+public class BlockWrapperRegistry {
+    
+    /**
+     * Interned block wrappers by block ID.
+     */
+    private final Map<String, ForgeBlockWrapper> wrappers = new HashMap<String, ForgeBlockWrapper>();
+    /**
+     * Whether property changes are batched.
+     */
+    private final boolean batching;
+    /**
+     * Mod priorities by mod ID.
+     */
+    private final Map<String, Integer> priorities;
+    /**
+     * Change sets by block, in order of first change.
+     */
+    private final Map<ForgeBlockWrapper, BlockChangeSet> changes = new LinkedHashMap<ForgeBlockWrapper, BlockChangeSet>();
+    /**
+     * Change sets changed since the last applied batch.
+     */
+    private final Set<BlockChangeSet> dirty = new LinkedHashSet<BlockChangeSet>();
+    /**
+     * Winning changes of the last applied batch.
+     */
+    private List<PropertyChange> report = new ArrayList<PropertyChange>();
+    /**
+     * The mod currently making changes.
+     */
+    private String currentMod = null;
+    /**
+     * Next change sequence number.
+     */
+    private long sequence = 0L;
+    /**
+     * Whether changes to client-only properties are skipped.
+     */
+    private boolean skipClientOnly = false;
+    /**
+     * Number of skipped changes to client-only properties.
+     */
+    private int skipped = 0;
+    
+    /**
+     * Creates a registry writing property changes straight through.
+     */
+    public BlockWrapperRegistry() {
+        this(false, Collections.<String, Integer>emptyMap());
+    }
+    
+    /**
+     * Creates a registry.
+     * @param batching Whether to batch property changes until {@link #applyChanges()}
+     * @param priorities Mod priorities by mod ID; mods without an entry have priority 0
+     */
+    public BlockWrapperRegistry(boolean batching, Map<String, Integer> priorities) {
+        this.batching = batching;
+        this.priorities = priorities;
+    }
+    
+    /**
+     * Gets the interned block wrapper for the block by the given ID.
+     * @param name The ID of the block
+     * @return A block wrapper for the given block
+     */
+    public synchronized ForgeBlockWrapper getFor(String name) {
+        ForgeBlockWrapper fbw = this.wrappers.get(name);
+        if (fbw == null) {
+            Block block = GameRegistryView.get().getBlock(name);
+            if (block == null) {
+                AndesiteML.warn("The block name " + name + " is not present on this Minecraft installation! Changes to it are ignored.");
+                fbw = new ForgeBlockWrapper(this, name, GameRegistryView.get().getBlock(GameRegistryView.AIR), true);
+            } else {
+                fbw = new ForgeBlockWrapper(this, name, block, false);
+            }
+            this.wrappers.put(name, fbw);
+        }
+        return fbw;
+    }
+    
+    /**
+     * Gets all block wrappers interned so far.
+     * @return Interned block wrappers
+     */
+    public synchronized Collection<ForgeBlockWrapper> getWrappers() {
+        return Collections.unmodifiableCollection(new ArrayList<ForgeBlockWrapper>(this.wrappers.values()));
+    }
+    
+    /**
+     * Checks whether property changes are batched.
+     * @return True if changes are recorded instead of written through
+     */
+    public boolean isBatching() {
+        return this.batching;
+    }
+    
+    /**
+     * Sets whether changes to client-only properties, such as particle
+     * gravity, are skipped. Used on dedicated servers.
+     * @param skip Whether to skip client-only property changes
+     */
+    public synchronized void setSkippingClientOnly(boolean skip) {
+        this.skipClientOnly = skip;
+    }
+    
+    /**
+     * Checks whether a property change is skipped, counting it if it is.
+     * @param property The changed property
+     * @return True if the change must not be applied
+     */
+    synchronized boolean skips(BlockProperty property) {
+        if (this.skipClientOnly && property.isClientOnly()) {
+            this.skipped++;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Gets the number of skipped changes to client-only properties.
+     * @return Number of skipped changes
+     */
+    public synchronized int getSkippedCount() {
+        return this.skipped;
+    }
+    
+    /**
+     * Sets the mod making subsequent property changes.
+     * @param modid The mod ID, or null
+     */
+    public synchronized void setCurrentMod(String modid) {
+        this.currentMod = modid;
+    }
+    
+    /**
+     * Sets the mod making subsequent property changes and the sequence
+     * number its first change gets.
+     * @param modid The mod ID, or null
+     * @param sequenceBase Sequence number of the next change
+     */
+    public synchronized void setCurrentMod(String modid, long sequenceBase) {
+        this.currentMod = modid;
+        this.sequence = sequenceBase;
+    }
+    
+    /**
+     * Takes the next change sequence number, for changes recorded outside
+     * this registry such as drop rules.
+     * @return The sequence number
+     */
+    public synchronized long nextSequence() {
+        return this.sequence++;
+    }
+    
+    /**
+     * Gets the mod currently making property changes.
+     * @return The mod ID, or null
+     */
+    public synchronized String getCurrentMod() {
+        return this.currentMod;
+    }
+    
+    /**
+     * Gets the priority of a mod.
+     * @param modid The mod ID
+     * @return The mod priority
+     */
+    public int getPriority(String modid) {
+        Integer priority = modid == null ? null : this.priorities.get(modid);
+        return priority == null ? 0 : priority;
+    }
+    
+    /**
+     * Records a property change for a block.
+     * @param wrapper The changed block
+     * @param property The changed property
+     * @param value The new value
+     */
+    synchronized void record(ForgeBlockWrapper wrapper, BlockProperty property, Object value) {
+        BlockChangeSet set = this.changes.get(wrapper);
+        if (set == null) {
+            set = new BlockChangeSet(wrapper);
+            this.changes.put(wrapper, set);
+        }
+        if (!set.hasOriginal(property)) {
+            set.setOriginal(property, wrapper.read(property));
+        }
+        if (property == BlockProperty.HARDNESS && !set.hasOriginal(BlockProperty.RESISTANCE)) {
+            // Setting the hardness may raise the resistance, so it must be restorable too
+            set.setOriginal(BlockProperty.RESISTANCE, wrapper.read(BlockProperty.RESISTANCE));
+        }
+        this.dirty.add(set);
+        set.record(new PropertyChange(wrapper.getName(), property, value, this.currentMod, getPriority(this.currentMod), this.sequence++));
+    }
+    
+    /**
+     * Gets the pending value of a block property.
+     * @param wrapper The block
+     * @param property The property
+     * @return The value that will be applied, or null if the property has no pending change
+     */
+    synchronized Object getPendingValue(ForgeBlockWrapper wrapper, BlockProperty property) {
+        if (!this.batching) {
+            return null;
+        }
+        BlockChangeSet set = this.changes.get(wrapper);
+        if (set == null) {
+            return null;
+        }
+        PropertyChange winner = set.getWinner(property);
+        return winner == null ? null : winner.value;
+    }
+    
+    /**
+     * Removes all property changes made by a mod. The affected blocks are
+     * merged again by the next {@link #applyChanges()}.
+     * @param modid The mod ID
+     * @return Number of blocks affected
+     */
+    public synchronized int removeChangesOf(String modid) {
+        int count = 0;
+        for (BlockChangeSet set : this.changes.values()) {
+            if (set.removeChangesOf(modid)) {
+                this.dirty.add(set);
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Merges all change sets changed since the last batch and writes each
+     * changed block once. Properties left without changes are restored to
+     * their original values. Hardness is written before resistance; if the
+     * hardness was set after the resistance, or the resistance was restored,
+     * it is written again so that it raises the resistance just like writing
+     * through would have.
+     * @return The winning changes, in order of first change per block
+     */
+    public synchronized List<PropertyChange> applyChanges() {
+        List<PropertyChange> winners = new ArrayList<PropertyChange>();
+        for (BlockChangeSet set : this.dirty) {
+            for (BlockProperty property : set.getTouchedProperties()) {
+                PropertyChange winner = set.getWinner(property);
+                if (winner == null) {
+                    set.getWrapper().restore(property, set.getOriginal(property));
+                    continue;
+                }
+                set.getWrapper().write(property, winner.value);
+                winners.add(winner);
+                reportConflicts(winner, set.getChanges(property));
+            }
+            PropertyChange hardness = set.getWinner(BlockProperty.HARDNESS);
+            PropertyChange resistance = set.getWinner(BlockProperty.RESISTANCE);
+            if (hardness != null && (resistance == null || hardness.sequence > resistance.sequence)) {
+                set.getWrapper().write(BlockProperty.HARDNESS, hardness.value);
+            }
+        }
+        this.dirty.clear();
+        this.report = winners;
+        return winners;
+    }
+    
+    /**
+     * Gets the winning changes of the last applied batch.
+     * @return Winning property changes
+     */
+    public synchronized List<PropertyChange> getChangeReport() {
+        return Collections.unmodifiableList(this.report);
+    }
+    
+    /**
+     * Logs which mod won a property conflict.
+     * @param winner The winning change
+     * @param changes All changes to the property
+     */
+    private static void reportConflicts(PropertyChange winner, List<PropertyChange> changes) {
+        StringBuilder overridden = null;
+        for (PropertyChange change : changes) {
+            if (change != winner && (change.modid == null ? winner.modid != null : !change.modid.equals(winner.modid))) {
+                if (overridden == null) {
+                    overridden = new StringBuilder();
+                } else {
+                    overridden.append(", ");
+                }
+                overridden.append(change.modid);
+            }
+        }
+        if (overridden != null) {
+            AndesiteML.info("Block " + winner.block + " " + winner.property + ": using " + winner.value + " from " + winner.modid + ", overriding " + overridden);
+        }
+    }
+}
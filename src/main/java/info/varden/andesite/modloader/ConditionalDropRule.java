@@ -0,0 +1,307 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import info.varden.andesite.core.BlockBreakSource;
+import info.varden.andesite.core.PlayerRequirements;
+import info.varden.andesite.core.SilkTouchMode;
+import info.varden.andesite.core.wrapper.AndesiteItemStack;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.minecraft.item.ItemStack;
+
+/**
+ * A compiled conditional drop rule for a single block.
+ * <p>
+ * Rules carry the priority of the mod registering them and a registration
+ * sequence number, which together decide the order the rules of a block are
+ * evaluated in; see {@link DropTable}.
+ * @author Marius
+ */
+public class ConditionalDropRule {
+    
+    /**
+     * Highest fortune level a harvest can have. Enchantment levels are
+     * stored as shorts.
+     */
+    public static final int MAX_FORTUNE_LEVEL = Short.MAX_VALUE;
+    
+    /**
+     * Next registration sequence number.
+     */
+    private static final AtomicInteger NEXT_SEQUENCE = new AtomicInteger();
+    
+    /**
+     * Required silk touch mode.
+     */
+    private final SilkTouchMode mode;
+    /**
+     * Required block breaking source.
+     */
+    private final BlockBreakSource source;
+    /**
+     * Required fortune level, or -1 for any level.
+     */
+    private final int fortuneLevel;
+    /**
+     * Pre-resolved item stacks to drop.
+     */
+    private final ItemStackTemplate[] items;
+    /**
+     * Chance of dropping each item stack.
+     */
+    private final float dropChance;
+    /**
+     * Whether to override existing drops when the conditions are met.
+     */
+    private final boolean overrideDrops;
+    /**
+     * Requirements for the player if a player broke the block, or null.
+     */
+    private final PlayerRequirements conditions;
+    /**
+     * Priority of the mod registering this rule.
+     */
+    private final int priority;
+    /**
+     * Registration sequence number.
+     */
+    private final long sequence;
+    /**
+     * Runtime statistics of this rule.
+     */
+    private final DropRuleStats stats;
+    
+    /**
+     * Compiles a conditional drop rule not attributed to a block or mod.
+     * @param mode Required silk touch mode
+     * @param source Required block breaking source
+     * @param fortuneLevel Required fortune level, or -1 for any level
+     * @param items List of item stacks to drop
+     * @param dropChance Chance of dropping each item stack
+     * @param overrideDrops Whether or not to override existing drops when the given conditions are met
+     * @param conditions Requirements for the player if a player broke the block
+     */
+    public ConditionalDropRule(SilkTouchMode mode, BlockBreakSource source, int fortuneLevel, List<AndesiteItemStack> items, float dropChance, boolean overrideDrops, PlayerRequirements conditions) {
+        this(null, null, mode, source, fortuneLevel, items, dropChance, overrideDrops, conditions);
+    }
+    
+    /**
+     * Compiles a conditional drop rule.
+     * @param block ID of the block the rule is registered on
+     * @param modid ID of the mod registering the rule, or null if unknown
+     * @param mode Required silk touch mode
+     * @param source Required block breaking source
+     * @param fortuneLevel Required fortune level, or -1 for any level
+     * @param items List of item stacks to drop
+     * @param dropChance Chance of dropping each item stack
+     * @param overrideDrops Whether or not to override existing drops when the given conditions are met
+     * @param conditions Requirements for the player if a player broke the block
+     */
+    public ConditionalDropRule(String block, String modid, SilkTouchMode mode, BlockBreakSource source, int fortuneLevel, List<AndesiteItemStack> items, float dropChance, boolean overrideDrops, PlayerRequirements conditions) {
+        this(block, modid, 0, mode, source, fortuneLevel, items, dropChance, overrideDrops, conditions);
+    }
+    
+    /**
+     * Compiles a conditional drop rule with a mod priority.
+     * @param block ID of the block the rule is registered on
+     * @param modid ID of the mod registering the rule, or null if unknown
+     * @param priority Priority of the mod registering the rule
+     * @param mode Required silk touch mode
+     * @param source Required block breaking source
+     * @param fortuneLevel Required fortune level, or -1 for any level
+     * @param items List of item stacks to drop
+     * @param dropChance Chance of dropping each item stack
+     * @param overrideDrops Whether or not to override existing drops when the given conditions are met
+     * @param conditions Requirements for the player if a player broke the block
+     */
+    public ConditionalDropRule(String block, String modid, int priority, SilkTouchMode mode, BlockBreakSource source, int fortuneLevel, List<AndesiteItemStack> items, float dropChance, boolean overrideDrops, PlayerRequirements conditions) {
+        this(block, modid, priority, NEXT_SEQUENCE.getAndIncrement(), mode, source, fortuneLevel, items, dropChance, overrideDrops, conditions);
+    }
+    
+    /**
+     * Compiles a conditional drop rule with a mod priority and a load order
+     * sequence number.
+     * @param block ID of the block the rule is registered on
+     * @param modid ID of the mod registering the rule, or null if unknown
+     * @param priority Priority of the mod registering the rule
+     * @param sequence Load order sequence number of the rule
+     * @param mode Required silk touch mode
+     * @param source Required block breaking source
+     * @param fortuneLevel Required fortune level, or -1 for any level
+     * @param items List of item stacks to drop
+     * @param dropChance Chance of dropping each item stack
+     * @param overrideDrops Whether or not to override existing drops when the given conditions are met
+     * @param conditions Requirements for the player if a player broke the block
+     */
+    public ConditionalDropRule(String block, String modid, int priority, long sequence, SilkTouchMode mode, BlockBreakSource source, int fortuneLevel, List<AndesiteItemStack> items, float dropChance, boolean overrideDrops, PlayerRequirements conditions) {
+        this.priority = priority;
+        this.sequence = sequence;
+        this.mode = mode;
+        this.source = source;
+        this.fortuneLevel = fortuneLevel;
+        this.items = ForgeItemStackTranslator.compile(items);
+        this.dropChance = dropChance;
+        this.overrideDrops = overrideDrops;
+        this.conditions = conditions;
+        this.stats = new DropRuleStats(block, modid);
+    }
+    
+    /**
+     * Checks whether the harvest conditions of this rule are met.
+     * @param silkTouching Whether the block was harvested with silk touch
+     * @param byPlayer Whether the block was harvested by a player
+     * @param fortune Fortune level of the harvest
+     * @return True if the rule applies to the harvest
+     */
+    public boolean matches(boolean silkTouching, boolean byPlayer, int fortune) {
+        return (this.mode == SilkTouchMode.ANY || (this.mode == SilkTouchMode.SILKTOUCH) == silkTouching) &&
+                (this.fortuneLevel == -1 || this.fortuneLevel == fortune) &&
+                (this.source == BlockBreakSource.ANY || (this.source == BlockBreakSource.OTHER) == !byPlayer);
+    }
+    
+    /**
+     * Gets the fortune level this rule requires.
+     * @return Required fortune level, or -1 for any level
+     */
+    public int getFortuneLevel() {
+        return this.fortuneLevel;
+    }
+    
+    /**
+     * Checks whether this rule overrides existing drops. Once an overriding
+     * rule applies, no rule after it in evaluation order can change the
+     * harvest.
+     * @return True if the rule replaces existing drops
+     */
+    public boolean isOverride() {
+        return this.overrideDrops;
+    }
+    
+    /**
+     * Gets the drop chance this rule sets.
+     * @return Chance of dropping each item stack
+     */
+    public float getDropChance() {
+        return this.dropChance;
+    }
+    
+    /**
+     * Gets the priority of the mod that registered this rule.
+     * @return Mod priority
+     */
+    public int getPriority() {
+        return this.priority;
+    }
+    
+    /**
+     * Gets the registration sequence number of this rule.
+     * @return Sequence number; later rules have higher numbers
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+    
+    /**
+     * Checks whether this rule is evaluated before another rule of the same
+     * block. Higher priorities go first; for equal priorities the rule
+     * registered last goes first, so that the first applying override is the
+     * one that would have been applied last in registration order.
+     * @param other The other rule
+     * @return True if this rule is evaluated first
+     */
+    public boolean precedes(ConditionalDropRule other) {
+        if (this.priority != other.priority) {
+            return this.priority > other.priority;
+        }
+        return this.sequence > other.sequence;
+    }
+    
+    /**
+     * Checks whether this rule has requirements for the harvesting player.
+     * @return True if player requirements must be checked
+     */
+    public boolean hasConditions() {
+        return this.conditions != null;
+    }
+    
+    /**
+     * Checks whether the given player meets the requirements of this rule.
+     * @param player The harvesting player
+     * @return True if the player satisfies the rule requirements
+     */
+    public boolean satisfiedBy(ForgePlayerWrapper player) {
+        return this.conditions == null || player.satisfies(this.conditions);
+    }
+    
+    /**
+     * Gets the ID of the mod that registered this rule.
+     * @return The mod ID, or null if unknown
+     */
+    public String getModid() {
+        return this.stats.getModid();
+    }
+    
+    /**
+     * Gets the runtime statistics of this rule.
+     * @return Rule statistics
+     */
+    public DropRuleStats getStats() {
+        return this.stats;
+    }
+    
+    /**
+     * Estimates the heap size of this rule and its statistics. Item stack
+     * templates are interned and shared, so only the template array counts.
+     * @return Estimated size in bytes
+     */
+    long estimateSize() {
+        return HeapEstimate.object(5 * HeapEstimate.REFERENCE + 4L + 4L + 1L + 4L + 8L) + HeapEstimate.array(this.items.length, HeapEstimate.REFERENCE) + DropRuleStats.SIZE;
+    }
+    
+    /**
+     * Applies the drops of this rule.
+     * @param drops The drop list of the harvest
+     * @return The drop chance to set on the harvest
+     */
+    public float apply(List<ItemStack> drops) {
+        if (this.overrideDrops) {
+            drops.clear();
+        }
+        addItems(drops);
+        return this.dropChance;
+    }
+    
+    /**
+     * Adds the item stacks of this rule to a drop list.
+     * @param drops The drop list of the harvest
+     */
+    public void addItems(List<ItemStack> drops) {
+        for (int i = 0; i < this.items.length; i++) {
+            drops.add(this.items[i].create());
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.event.world.BlockEvent;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+/**
+ * Block-indexed dispatcher for Andesite drop rules.
+ * <p>
+ * A single instance is registered on the Forge event bus. Drops are only
+ * handled in server worlds, so the rules stay authoritative on the server,
+ * integrated or dedicated. Each harvest event
+ * only looks at the rules registered for the harvested block, which are
+ * compiled into a {@link DropTable} so that only matching rules are visited.
+ * @author Marius
+ */
+public class DropDispatcher {
+    
+    /**
+     * The shared dispatcher instance.
+     */
+    private static final DropDispatcher INSTANCE = new DropDispatcher();
+    
+    /**
+     * Blocks whose default drops are removed, with the mods that removed them.
+     */
+    private final Map<Block, Set<String>> removedDefaults = new ConcurrentHashMap<Block, Set<String>>();
+    /**
+     * Compiled conditional drop rules by block.
+     */
+    private final Map<Block, DropTable> conditionalDrops = new ConcurrentHashMap<Block, DropTable>();
+    /**
+     * Conditional drop rules added since the tables were last compiled, by block.
+     */
+    private final Map<Block, List<ConditionalDropRule>> pending = new HashMap<Block, List<ConditionalDropRule>>();
+    /**
+     * Runtime statistics of the conditional drop rules.
+     */
+    private final DropMetrics metrics = new DropMetrics();
+    
+    /**
+     * Gets the shared dispatcher instance.
+     * @return The dispatcher registered on the Forge event bus
+     */
+    public static DropDispatcher instance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Removes the default drops of a block.
+     * @param block The block
+     */
+    public void removeDefaultDrops(Block block) {
+        removeDefaultDrops(block, null);
+    }
+    
+    /**
+     * Removes the default drops of a block on behalf of a mod.
+     * @param block The block
+     * @param modid ID of the mod removing the drops, or null if unknown
+     */
+    public synchronized void removeDefaultDrops(Block block, String modid) {
+        Set<String> mods = this.removedDefaults.get(block);
+        if (mods == null) {
+            mods = new HashSet<String>();
+            this.removedDefaults.put(block, mods);
+        }
+        mods.add(modid);
+    }
+    
+    /**
+     * Adds a conditional drop rule to a block. The rule takes effect once
+     * {@link #compilePending()} is called.
+     * @param block The block
+     * @param rule The rule to add
+     */
+    public synchronized void addConditionalDrops(Block block, ConditionalDropRule rule) {
+        List<ConditionalDropRule> rules = this.pending.get(block);
+        if (rules == null) {
+            rules = new ArrayList<ConditionalDropRule>();
+            this.pending.put(block, rules);
+        }
+        rules.add(rule);
+        this.metrics.register(rule.getStats());
+    }
+    
+    /**
+     * Compiles the drop tables of all blocks that had rules added since the
+     * last call, once per block.
+     * @return Number of compiled tables
+     */
+    public synchronized int compilePending() {
+        for (Map.Entry<Block, List<ConditionalDropRule>> entry : this.pending.entrySet()) {
+            DropTable old = this.conditionalDrops.get(entry.getKey());
+            List<ConditionalDropRule> added = entry.getValue();
+            int offset = old == null ? 0 : old.getRules().length;
+            ConditionalDropRule[] rules = new ConditionalDropRule[offset + added.size()];
+            if (old != null) {
+                System.arraycopy(old.getRules(), 0, rules, 0, offset);
+            }
+            for (int i = 0; i < added.size(); i++) {
+                rules[offset + i] = added.get(i);
+            }
+            this.conditionalDrops.put(entry.getKey(), new DropTable(rules));
+        }
+        int count = this.pending.size();
+        this.pending.clear();
+        return count;
+    }
+    
+    /**
+     * Removes all drop rules registered by a mod.
+     * @param modid The mod ID
+     * @return Number of rules removed, counting removed default drops as one rule each
+     */
+    public synchronized int removeRulesOf(String modid) {
+        int count = 0;
+        Iterator<Map.Entry<Block, Set<String>>> defaults = this.removedDefaults.entrySet().iterator();
+        while (defaults.hasNext()) {
+            Set<String> mods = defaults.next().getValue();
+            if (mods.remove(modid)) {
+                count++;
+                if (mods.isEmpty()) {
+                    defaults.remove();
+                }
+            }
+        }
+        Iterator<List<ConditionalDropRule>> added = this.pending.values().iterator();
+        while (added.hasNext()) {
+            List<ConditionalDropRule> rules = added.next();
+            Iterator<ConditionalDropRule> it = rules.iterator();
+            while (it.hasNext()) {
+                ConditionalDropRule rule = it.next();
+                if (modid == null ? rule.getModid() == null : modid.equals(rule.getModid())) {
+                    this.metrics.unregister(rule.getStats());
+                    it.remove();
+                    count++;
+                }
+            }
+            if (rules.isEmpty()) {
+                added.remove();
+            }
+        }
+        Iterator<Map.Entry<Block, DropTable>> blocks = this.conditionalDrops.entrySet().iterator();
+        while (blocks.hasNext()) {
+            Map.Entry<Block, DropTable> entry = blocks.next();
+            List<ConditionalDropRule> kept = new ArrayList<ConditionalDropRule>();
+            for (ConditionalDropRule rule : entry.getValue().getRules()) {
+                if (modid == null ? rule.getModid() == null : modid.equals(rule.getModid())) {
+                    this.metrics.unregister(rule.getStats());
+                    count++;
+                } else {
+                    kept.add(rule);
+                }
+            }
+            if (kept.isEmpty()) {
+                blocks.remove();
+            } else if (kept.size() < entry.getValue().getRules().length) {
+                entry.setValue(new DropTable(kept.toArray(new ConditionalDropRule[kept.size()])));
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Adds the estimated heap size of the drop rules of each mod.
+     * @param sizes Estimated sizes by mod ID
+     */
+    public synchronized void estimateRetained(Map<String, Long> sizes) {
+        for (Set<String> mods : this.removedDefaults.values()) {
+            for (String modid : mods) {
+                HeapEstimate.add(sizes, modid, HeapEstimate.REFERENCE);
+            }
+        }
+        for (DropTable table : this.conditionalDrops.values()) {
+            for (ConditionalDropRule rule : table.getRules()) {
+                HeapEstimate.add(sizes, rule.getModid(), rule.estimateSize());
+            }
+        }
+    }
+    
+    /**
+     * Gets the runtime statistics of the conditional drop rules.
+     * @return Drop rule metrics
+     */
+    public DropMetrics getMetrics() {
+        return this.metrics;
+    }
+    
+    /**
+     * Gets the number of blocks with drop rules.
+     * @return Number of blocks with removed default drops or conditional drops
+     */
+    public int getBlockCount() {
+        int count = this.conditionalDrops.size();
+        for (Block block : this.removedDefaults.keySet()) {
+            if (!this.conditionalDrops.containsKey(block)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Minecraft Forge block harvesting event handler removing default drops.
+     * @param event Minecraft Forge block harvesting event
+     */
+    @SubscribeEvent(priority = EventPriority.LOW)
+    public void removeDefaultDrops(BlockEvent.HarvestDropsEvent event) {
+        if (event.world.isRemote) {
+            return;
+        }
+        if (this.removedDefaults.containsKey(event.state.getBlock())) {
+            event.drops.clear();
+            event.dropChance = 0.0F;
+        }
+    }
+    
+    /**
+     * Minecraft Forge block harvesting event handler applying conditional drops.
+     * @param event Minecraft Forge block harvesting event
+     */
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void conditionalDrops(BlockEvent.HarvestDropsEvent event) {
+        if (event.world.isRemote) {
+            return;
+        }
+        event.dropChance = applyConditionalDrops(event.state.getBlock(), event.isSilkTouching, event.harvester, event.fortuneLevel, event.drops, event.dropChance);
+    }
+    
+    /**
+     * Applies the conditional drop rules of a block to a harvest.
+     * @param block The harvested block
+     * @param silkTouching Whether the block was harvested with silk touch
+     * @param harvester The harvesting player, or null
+     * @param fortune Fortune level of the harvest
+     * @param drops The drop list of the harvest
+     * @param dropChance The current drop chance of the harvest
+     * @return The new drop chance of the harvest
+     */
+    public float applyConditionalDrops(Block block, boolean silkTouching, EntityPlayer harvester, int fortune, List<ItemStack> drops, float dropChance) {
+        DropTable table = this.conditionalDrops.get(block);
+        if (table == null) {
+            return dropChance;
+        }
+        return applyRules(table.rulesFor(silkTouching, harvester != null, fortune), harvester, drops, dropChance);
+    }
+    
+    /**
+     * Applies a set of matching drop rules to a harvest, in evaluation order.
+     * An overriding rule removes the drops the harvest started with, keeps
+     * the drops of the rules evaluated before it and ends the evaluation.
+     * The first applied rule sets the drop chance. This gives the same drops
+     * as applying the rules in registration order without stopping.
+     * @param rules The drop rules matching the harvest
+     * @param harvester The harvesting player, or null
+     * @param drops The drop list of the harvest
+     * @param dropChance The current drop chance of the harvest
+     * @return The new drop chance of the harvest
+     */
+    private float applyRules(ConditionalDropRule[] rules, EntityPlayer harvester, List<ItemStack> drops, float dropChance) {
+        boolean byPlayer = harvester != null;
+        int defaults = drops.size();
+        boolean applied = false;
+        boolean measured = this.metrics.isEnabled();
+        ForgePlayerWrapper player = null;
+        for (int i = 0; i < rules.length; i++) {
+            ConditionalDropRule rule = rules[i];
+            long start = measured ? System.nanoTime() : 0L;
+            boolean rejected = false;
+            if (byPlayer && rule.hasConditions()) {
+                if (player == null) {
+                    player = ForgePlayerWrapper.getFor(harvester);
+                }
+                rejected = !rule.satisfiedBy(player);
+            }
+            if (!rejected) {
+                if (rule.isOverride()) {
+                    drops.subList(0, defaults).clear();
+                }
+                rule.addItems(drops);
+                if (!applied) {
+                    dropChance = rule.getDropChance();
+                    applied = true;
+                }
+            }
+            if (measured) {
+                rule.getStats().record(rejected, System.nanoTime() - start);
+            }
+            if (!rejected && rule.isOverride()) {
+                break;
+            }
+        }
+        return dropChance;
+    }
+}
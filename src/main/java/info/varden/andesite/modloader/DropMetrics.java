@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+/**
+ * Runtime statistics of all drop rules registered with a dispatcher.
+ * <p>
+ * Besides the per-rule statistics, statistics are aggregated per mod when a
+ * report is made. When a dump file is set, the report is written to it
+ * periodically from the server tick.
+ * @author Marius
+ */
+public class DropMetrics {
+    
+    /**
+     * Statistics of all registered rules, in registration order.
+     */
+    private final List<DropRuleStats> rules = new CopyOnWriteArrayList<DropRuleStats>();
+    /**
+     * Whether rule evaluations are recorded.
+     */
+    private volatile boolean enabled = true;
+    /**
+     * File the report is periodically written to, or null.
+     */
+    private File dumpFile = null;
+    /**
+     * Number of server ticks between report dumps.
+     */
+    private int dumpInterval = 0;
+    /**
+     * Server ticks since the last report dump.
+     */
+    private int ticks = 0;
+    
+    /**
+     * Registers the statistics of a rule.
+     * @param stats The rule statistics
+     */
+    public void register(DropRuleStats stats) {
+        this.rules.add(stats);
+    }
+    
+    /**
+     * Unregisters the statistics of a removed rule.
+     * @param stats The rule statistics
+     */
+    public void unregister(DropRuleStats stats) {
+        this.rules.remove(stats);
+    }
+    
+    /**
+     * Checks whether rule evaluations are recorded.
+     * @return True if drop rule metrics are enabled
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+    
+    /**
+     * Enables or disables recording of rule evaluations.
+     * @param enabled Whether to record rule evaluations
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    /**
+     * Periodically writes the report to a file.
+     * @param file The file to write, or null to stop dumping
+     * @param interval Number of server ticks between dumps; 0 or less stops dumping
+     */
+    public void setDump(File file, int interval) {
+        this.dumpFile = interval > 0 ? file : null;
+        this.dumpInterval = interval;
+        this.ticks = 0;
+    }
+    
+    /**
+     * Gets the statistics of all registered rules.
+     * @return Rule statistics in registration order
+     */
+    public List<DropRuleStats> getRules() {
+        return Collections.unmodifiableList(this.rules);
+    }
+    
+    /**
+     * Resets the statistics of all rules.
+     */
+    public void reset() {
+        for (DropRuleStats stats : this.rules) {
+            stats.reset();
+        }
+    }
+    
+    /**
+     * Aggregates the rule statistics per mod.
+     * @return Aggregated statistics by mod ID, most expensive first
+     */
+    public List<DropRuleStats> getModTotals() {
+        Map<String, DropRuleStats> totals = new LinkedHashMap<String, DropRuleStats>();
+        for (DropRuleStats stats : this.rules) {
+            DropRuleStats total = totals.get(stats.getModid());
+            if (total == null) {
+                total = new DropRuleStats(null, stats.getModid());
+                totals.put(stats.getModid(), total);
+            }
+            total.add(stats);
+        }
+        return sortByTime(totals.values());
+    }
+    
+    /**
+     * Gets the most expensive rules.
+     * @param count Maximum number of rules to return
+     * @return Rule statistics, most expensive first
+     */
+    public List<DropRuleStats> getSlowestRules(int count) {
+        List<DropRuleStats> sorted = sortByTime(this.rules);
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+    
+    /**
+     * Creates a report of the per-mod totals and the most expensive rules.
+     * @param count Maximum number of rules to list
+     * @return Report lines
+     */
+    public List<String> report(int count) {
+        List<String> lines = new ArrayList<String>();
+        lines.add("Drop rules: " + this.rules.size() + (this.enabled ? "" : " (metrics disabled)"));
+        for (DropRuleStats total : getModTotals()) {
+            lines.add("Mod " + total.getModid() + ": " + total);
+        }
+        for (DropRuleStats stats : getSlowestRules(count)) {
+            lines.add("Rule #" + this.rules.indexOf(stats) + " of " + stats.getModid() + " on " + stats.getBlock() + ": " + stats);
+        }
+        return lines;
+    }
+    
+    /**
+     * Writes a report of all rules to a file.
+     * @param file The file to write
+     * @throws IOException If the file could not be written
+     */
+    public void write(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            for (String line : report(this.rules.size())) {
+                out.println(line);
+            }
+        } finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("Could not write " + file);
+        }
+    }
+    
+    /**
+     * Minecraft Forge server tick handler periodically dumping the report.
+     * @param event Minecraft Forge server tick event
+     */
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || this.dumpFile == null || ++this.ticks < this.dumpInterval) {
+            return;
+        }
+        this.ticks = 0;
+        try {
+            write(this.dumpFile);
+        } catch (IOException e) {
+            AndesiteML.warn("Could not write drop rule metrics to " + this.dumpFile.getPath() + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Sorts statistics by cumulative evaluation time.
+     * @param stats The statistics to sort
+     * @return Sorted statistics, most expensive first
+     */
+    private static List<DropRuleStats> sortByTime(Iterable<DropRuleStats> stats) {
+        List<DropRuleStats> sorted = new ArrayList<DropRuleStats>();
+        for (DropRuleStats s : stats) {
+            sorted.add(s);
+        }
+        Collections.sort(sorted, new Comparator<DropRuleStats>() {
+            @Override
+            public int compare(DropRuleStats a, DropRuleStats b) {
+                return a.getTotalNanos() < b.getTotalNanos() ? 1 : (a.getTotalNanos() > b.getTotalNanos() ? -1 : 0);
+            }
+        });
+        return sorted;
+    }
+}
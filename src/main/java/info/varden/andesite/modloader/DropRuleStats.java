@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+/**
+ * Hot-path counters and a latency histogram of a drop rule.
+ * <p>
+ * Counters are plain fields updated without allocation. Harvest events only
+ * fire on the server thread, which is also the thread reading and resetting
+ * them, so no synchronization is used.
+ * @author Marius
+ */
+public class DropRuleStats {
+    
+    /**
+     * Number of latency histogram buckets. Bucket n counts evaluations
+     * taking less than 2^n nanoseconds; the last bucket counts the rest.
+     */
+    public static final int BUCKETS = 40;
+    /**
+     * Estimated heap size of a statistics object, including its histogram.
+     */
+    static final long SIZE = HeapEstimate.object(2 * HeapEstimate.REFERENCE + 4 * 8L + HeapEstimate.REFERENCE) + HeapEstimate.array(BUCKETS, 8L);
+    
+    /**
+     * ID of the harvested block, or null for aggregated statistics.
+     */
+    private final String block;
+    /**
+     * ID of the mod that registered the rule, or null if unknown.
+     */
+    private final String modid;
+    /**
+     * Number of times the rule was evaluated. The drop table only hands a
+     * rule to harvests matching its harvest conditions, so every evaluation
+     * is a match.
+     */
+    private long evaluations = 0L;
+    /**
+     * Number of evaluations rejected by the player requirements.
+     */
+    private long rejections = 0L;
+    /**
+     * Cumulative evaluation time in nanoseconds.
+     */
+    private long totalNanos = 0L;
+    /**
+     * Longest evaluation time in nanoseconds.
+     */
+    private long maxNanos = 0L;
+    /**
+     * Evaluation counts by power-of-two latency bucket.
+     */
+    private final long[] histogram = new long[BUCKETS];
+    
+    /**
+     * Creates empty statistics.
+     * @param block ID of the harvested block, or null for aggregated statistics
+     * @param modid ID of the mod that registered the rule, or null if unknown
+     */
+    public DropRuleStats(String block, String modid) {
+        this.block = block;
+        this.modid = modid;
+    }
+    
+    /**
+     * Records one evaluation of the rule.
+     * @param rejected Whether the evaluation was rejected by the player requirements
+     * @param nanos Evaluation time in nanoseconds
+     */
+    public void record(boolean rejected, long nanos) {
+        this.evaluations++;
+        if (rejected) {
+            this.rejections++;
+        }
+        this.totalNanos += nanos;
+        if (nanos > this.maxNanos) {
+            this.maxNanos = nanos;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(nanos);
+        this.histogram[bucket < BUCKETS ? bucket : BUCKETS - 1]++;
+    }
+    
+    /**
+     * Adds the counters of other statistics to these.
+     * @param other The statistics to add
+     */
+    public void add(DropRuleStats other) {
+        this.evaluations += other.evaluations;
+        this.rejections += other.rejections;
+        this.totalNanos += other.totalNanos;
+        this.maxNanos = Math.max(this.maxNanos, other.maxNanos);
+        for (int i = 0; i < BUCKETS; i++) {
+            this.histogram[i] += other.histogram[i];
+        }
+    }
+    
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        this.evaluations = 0L;
+        this.rejections = 0L;
+        this.totalNanos = 0L;
+        this.maxNanos = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            this.histogram[i] = 0L;
+        }
+    }
+    
+    /**
+     * Gets the ID of the harvested block.
+     * @return The block ID, or null for aggregated statistics
+     */
+    public String getBlock() {
+        return this.block;
+    }
+    
+    /**
+     * Gets the ID of the mod that registered the rule.
+     * @return The mod ID, or null if unknown
+     */
+    public String getModid() {
+        return this.modid;
+    }
+    
+    /**
+     * Gets the number of times the rule was evaluated.
+     * @return Evaluation count
+     */
+    public long getEvaluations() {
+        return this.evaluations;
+    }
+    
+    /**
+     * Gets the number of evaluations rejected by the player requirements.
+     * @return Rejection count
+     */
+    public long getRejections() {
+        return this.rejections;
+    }
+    
+    /**
+     * Gets the cumulative evaluation time.
+     * @return Evaluation time in nanoseconds
+     */
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+    
+    /**
+     * Gets the longest evaluation time.
+     * @return Evaluation time in nanoseconds
+     */
+    public long getMaxNanos() {
+        return this.maxNanos;
+    }
+    
+    /**
+     * Estimates an evaluation time percentile from the latency histogram.
+     * @param fraction The percentile as a fraction between 0 and 1
+     * @return Upper bound of the histogram bucket containing the percentile, in nanoseconds
+     */
+    public long getPercentileNanos(double fraction) {
+        long target = (long) Math.ceil(this.evaluations * fraction);
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.histogram[i];
+            if (seen >= target && seen > 0L) {
+                return i == BUCKETS - 1 ? this.maxNanos : 1L << i;
+            }
+        }
+        return 0L;
+    }
+    
+    /**
+     * Describes the statistics in one line.
+     * @return Human readable statistics
+     */
+    @Override
+    public String toString() {
+        return this.evaluations + " evaluated, " + this.rejections + " rejected, "
+                + (this.totalNanos / 1000L) + " us total, p50 <" + getPercentileNanos(0.5D) + " ns, p99 <" + getPercentileNanos(0.99D)
+                + " ns, max " + this.maxNanos + " ns";
+    }
+}
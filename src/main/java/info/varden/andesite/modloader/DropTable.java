@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Conditional drop rules of a block, compiled into a decision table.
+ * <p>
+ * The table is indexed by silk touch, harvest source and fortune level.
+ * Every cell holds the rules whose harvest conditions match, in evaluation
+ * order (see {@link ConditionalDropRule#precedes(ConditionalDropRule)}), so
+ * a harvest only looks up one cell. Only the fortune levels some rule asks
+ * for get a column of their own; all other levels share one overflow
+ * column, which only holds rules accepting any fortune level.
+ * <p>
+ * Evaluation stops at the first overriding rule that applies. A cell ends
+ * at its first overriding rule that always applies to the cell's harvests,
+ * because no rule after it can ever run.
+ * @author Marius
+ */
+public class DropTable {
+    
+    /**
+     * Shared empty cell.
+     */
+    private static final ConditionalDropRule[] NONE = new ConditionalDropRule[0];
+    /**
+     * Orders rules for evaluation.
+     */
+    private static final Comparator<ConditionalDropRule> EVALUATION_ORDER = new Comparator<ConditionalDropRule>() {
+        @Override
+        public int compare(ConditionalDropRule a, ConditionalDropRule b) {
+            return a.precedes(b) ? -1 : b.precedes(a) ? 1 : 0;
+        }
+    };
+    
+    /**
+     * All rules, in registration order.
+     */
+    private final ConditionalDropRule[] rules;
+    /**
+     * Fortune levels with a column of their own, sorted ascending.
+     */
+    private final int[] levels;
+    /**
+     * Matching rules by harvest kind (silk touch * 2 + by player) and fortune
+     * column. The last column is the overflow column.
+     */
+    private final ConditionalDropRule[][][] cells;
+    
+    /**
+     * Compiles a decision table.
+     * @param rules The rules of the block, in registration order
+     */
+    public DropTable(ConditionalDropRule[] rules) {
+        this.rules = rules;
+        Set<Integer> explicit = new TreeSet<Integer>();
+        for (ConditionalDropRule rule : rules) {
+            if (rule.getFortuneLevel() >= 0) {
+                explicit.add(rule.getFortuneLevel());
+            }
+        }
+        this.levels = new int[explicit.size()];
+        int column = 0;
+        for (int level : explicit) {
+            this.levels[column++] = level;
+        }
+        ConditionalDropRule[] ordered = rules.clone();
+        Arrays.sort(ordered, EVALUATION_ORDER);
+        this.cells = new ConditionalDropRule[4][this.levels.length + 1][];
+        for (int kind = 0; kind < 4; kind++) {
+            for (column = 0; column < this.levels.length; column++) {
+                this.cells[kind][column] = compile(ordered, kind >= 2, (kind & 1) != 0, this.levels[column]);
+            }
+            this.cells[kind][this.levels.length] = compile(ordered, kind >= 2, (kind & 1) != 0, -1);
+        }
+    }
+    
+    /**
+     * Gets the rules applying to a harvest.
+     * @param silkTouching Whether the block was harvested with silk touch
+     * @param byPlayer Whether the block was harvested by a player
+     * @param fortune Fortune level of the harvest
+     * @return Matching rules in evaluation order
+     */
+    public ConditionalDropRule[] rulesFor(boolean silkTouching, boolean byPlayer, int fortune) {
+        int column = fortune >= 0 ? Arrays.binarySearch(this.levels, fortune) : -1;
+        if (column < 0) {
+            column = this.levels.length;
+        }
+        return this.cells[(silkTouching ? 2 : 0) + (byPlayer ? 1 : 0)][column];
+    }
+    
+    /**
+     * Gets all rules in the table.
+     * @return Rules in registration order
+     */
+    public ConditionalDropRule[] getRules() {
+        return this.rules;
+    }
+    
+    /**
+     * Collects the rules matching one cell of the table, up to and including
+     * the first override that always applies.
+     * @param rules All rules, in evaluation order
+     * @param silkTouching Whether the block is harvested with silk touch
+     * @param byPlayer Whether the block is harvested by a player
+     * @param fortune Fortune level of the harvest, or -1 for the overflow column
+     * @return Matching rules in evaluation order
+     */
+    private static ConditionalDropRule[] compile(ConditionalDropRule[] rules, boolean silkTouching, boolean byPlayer, int fortune) {
+        List<ConditionalDropRule> cell = new ArrayList<ConditionalDropRule>();
+        for (ConditionalDropRule rule : rules) {
+            if (rule.matches(silkTouching, byPlayer, fortune)) {
+                cell.add(rule);
+                if (rule.isOverride() && (!byPlayer || !rule.hasConditions())) {
+                    break;
+                }
+            }
+        }
+        if (cell.isEmpty()) {
+            return NONE;
+        }
+        return cell.toArray(new ConditionalDropRule[cell.size()]);
+    }
+}
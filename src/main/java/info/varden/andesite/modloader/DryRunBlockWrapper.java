@@ -0,0 +1,285 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import info.varden.andesite.core.BlockBreakSource;
+import info.varden.andesite.core.PlayerRequirements;
+import info.varden.andesite.core.SilkTouchMode;
+import info.varden.andesite.core.wrapper.AndesiteItemStack;
+import info.varden.andesite.core.wrapper.BlockWrapper;
+import info.varden.andesite.core.wrapper.StepSoundWrapper;
+
+import java.util.List;
+
+/**
+ * Stand-in block wrapper checking and recording changes without touching Minecraft.
+ * @author Marius
+ */
+public class DryRunBlockWrapper implements BlockWrapper {
+    
+    /**
+     * The context this wrapper belongs to.
+     */
+    private final DryRunExecutionContext context;
+    /**
+     * The ID of the block.
+     */
+    private final String name;
+    /**
+     * The light level.
+     */
+    private float lightLevel = 0F;
+    /**
+     * The step sound.
+     */
+    private StepSoundWrapper stepSound = new StepSoundWrapper("stone", "dig.stone", "step.stone", 1F, 1F);
+    /**
+     * The resistance value.
+     */
+    private float resistance = 0F;
+    /**
+     * The hardness value.
+     */
+    private float hardness = 0F;
+    /**
+     * The slipperiness value.
+     */
+    private float slipperiness = 0.6F;
+    /**
+     * The particle gravity.
+     */
+    private float particleGravity = 1F;
+    
+    /**
+     * Creates a stand-in block wrapper.
+     * @param context The context this wrapper belongs to
+     * @param name The ID of the block
+     */
+    DryRunBlockWrapper(DryRunExecutionContext context, String name) {
+        this.context = context;
+        this.name = name;
+    }
+    
+    /**
+     * Gets a stand-in block wrapper for the block by the given ID.
+     * @param name The ID of the block
+     * @return A block wrapper for the given block
+     */
+    @Override
+    public DryRunBlockWrapper getFor(String name) {
+        return this.context.getBlockWrapperFor(name);
+    }
+    
+    /**
+     * Gets the block light level.
+     * @return The light level
+     */
+    @Override
+    public float getLightLevel() {
+        return this.lightLevel;
+    }
+    
+    /**
+     * Sets the block light level.
+     * @param value The light level to set
+     * @return The BlockWrapper instance
+     */
+    @Override
+    public DryRunBlockWrapper setLightLevel(float value) {
+        check("light level", value, 0F, 1F);
+        this.lightLevel = value;
+        return changed();
+    }
+    
+    /**
+     * Gets the block step sound.
+     * @return The step sound
+     */
+    @Override
+    public StepSoundWrapper getStepSound() {
+        return this.stepSound;
+    }
+    
+    /**
+     * Sets the block step sound.
+     * @param sound The step sound to set
+     * @return The BlockWrapper instance
+     */
+    public DryRunBlockWrapper setStepSound(StepSoundWrapper sound) {
+        if (sound == null) {
+            this.context.problem(this.name + ": step sound is null");
+            return this;
+        }
+        this.stepSound = sound;
+        return changed();
+    }
+    
+    /**
+     * Gets the block resistance value.
+     * @return The resistance value
+     */
+    @Override
+    public float getResistance() {
+        return this.resistance;
+    }
+    
+    /**
+     * Sets the block resistance value.
+     * @param resistance The resistance value to set
+     * @return The BlockWrapper instance
+     */
+    @Override
+    public DryRunBlockWrapper setResistance(float resistance) {
+        check("resistance", resistance, 0F, Float.MAX_VALUE);
+        this.resistance = resistance;
+        return changed();
+    }
+    
+    /**
+     * Gets the block hardness.
+     * @return The hardness value
+     */
+    @Override
+    public float getHardness() {
+        return this.hardness;
+    }
+    
+    /**
+     * Sets the block hardness.
+     * @param hardness The hardness value
+     * @return The BlockWrapper instance
+     */
+    @Override
+    public DryRunBlockWrapper setHardness(float hardness) {
+        check("hardness", hardness, -1F, Float.MAX_VALUE);
+        this.hardness = hardness;
+        return changed();
+    }
+    
+    /**
+     * Gets the block slipperiness.
+     * @return The slipperiness value
+     */
+    @Override
+    public float getSlipperiness() {
+        return this.slipperiness;
+    }
+    
+    /**
+     * Sets the block slipperiness.
+     * @param value The slipperiness value
+     * @return The BlockWrapper instance
+     */
+    @Override
+    public DryRunBlockWrapper setSlipperiness(float value) {
+        check("slipperiness", value, -Float.MAX_VALUE, Float.MAX_VALUE);
+        this.slipperiness = value;
+        return changed();
+    }
+    
+    /**
+     * Gets the block particle gravity.
+     * @return Particle gravitational force in meters per square second
+     */
+    @Override
+    public float getParticleGravity() {
+        return this.particleGravity;
+    }
+    
+    /**
+     * Sets the block particle gravity.
+     * @param value Particle gravitational force to set in meters per square second
+     * @return The BlockWrapper instance
+     */
+    @Override
+    public DryRunBlockWrapper setParticleGravity(float value) {
+        check("particle gravity", value, -Float.MAX_VALUE, Float.MAX_VALUE);
+        this.particleGravity = value;
+        return changed();
+    }
+    
+    /**
+     * Removes default drops for the block.
+     * @return The BlockWrapper instance
+     */
+    @Override
+    public DryRunBlockWrapper removeDefaultDrops() {
+        return changed();
+    }
+    
+    /**
+     * Adds conditional drops to the block.
+     * @param mode Required silk touch mode
+     * @param source Required block breaking source
+     * @param fortuneLevel Required fortune level, or -1 for any level
+     * @param items List of item stacks to drop
+     * @param dropChance Chance of dropping each item stack
+     * @param overrideDrops Whether or not to override existing drops when the given conditions are met
+     * @param conditions Requirements for the player if a player broke the block
+     * @return The BlockWrapper instance
+     */
+    public DryRunBlockWrapper setConditionalDrops(SilkTouchMode mode, BlockBreakSource source, int fortuneLevel, List<AndesiteItemStack> items, float dropChance, boolean overrideDrops, PlayerRequirements conditions) {
+        if (mode == null || source == null) {
+            this.context.problem(this.name + ": conditional drop without silk touch mode or break source");
+        }
+        if (fortuneLevel < -1) {
+            this.context.problem(this.name + ": conditional drop fortune level " + fortuneLevel + " is below -1");
+        } else if (fortuneLevel > ConditionalDropRule.MAX_FORTUNE_LEVEL) {
+            this.context.problem(this.name + ": conditional drop fortune level " + fortuneLevel + " is above " + ConditionalDropRule.MAX_FORTUNE_LEVEL);
+        }
+        check("drop chance", dropChance, 0F, 1F);
+        if (items == null) {
+            this.context.problem(this.name + ": conditional drop without items");
+        } else {
+            for (AndesiteItemStack item : items) {
+                if (item.getAmount() < 0) {
+                    this.context.problem(this.name + ": conditional drop of " + item.getID() + " has negative amount " + item.getAmount());
+                }
+            }
+        }
+        return changed();
+    }
+    
+    /**
+     * Records a change of this block.
+     * @return The BlockWrapper instance
+     */
+    private DryRunBlockWrapper changed() {
+        this.context.changed();
+        return this;
+    }
+    
+    /**
+     * Reports a property value outside its valid range.
+     * @param property Name of the property
+     * @param value The value set
+     * @param min Smallest valid value
+     * @param max Largest valid value
+     */
+    private void check(String property, float value, float min, float max) {
+        if (Float.isNaN(value) || value < min || value > max) {
+            this.context.problem(this.name + ": " + property + " " + value + " is out of range");
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import info.varden.andesite.core.ActionExecutionContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stand-in execution context recording what actions do without touching Minecraft.
+ * @author Marius
+ */
+public class DryRunExecutionContext implements ActionExecutionContext {
+    
+    /**
+     * Stand-in block wrappers by block ID.
+     */
+    private final Map<String, DryRunBlockWrapper> blocks = new LinkedHashMap<String, DryRunBlockWrapper>();
+    /**
+     * Problems found while running actions.
+     */
+    private final List<String> problems = new ArrayList<String>();
+    /**
+     * Number of block changes made.
+     */
+    private int changes = 0;
+    
+    /**
+     * Returns a stand-in block wrapper for the given block ID.
+     * @param block The block ID to wrap
+     * @return A block wrapper recording changes
+     */
+    @Override
+    public DryRunBlockWrapper getBlockWrapperFor(String block) {
+        DryRunBlockWrapper wrapper = this.blocks.get(block);
+        if (wrapper == null) {
+            if (block == null || block.trim().isEmpty()) {
+                problem("Empty block ID");
+            }
+            wrapper = new DryRunBlockWrapper(this, block);
+            this.blocks.put(block, wrapper);
+        }
+        return wrapper;
+    }
+    
+    /**
+     * Records a block change.
+     */
+    void changed() {
+        this.changes++;
+    }
+    
+    /**
+     * Records a problem.
+     * @param problem Description of the problem
+     */
+    void problem(String problem) {
+        this.problems.add(problem);
+    }
+    
+    /**
+     * Gets the IDs of all blocks the actions touched.
+     * @return Block IDs in order of first use
+     */
+    public Collection<String> getBlocks() {
+        return Collections.unmodifiableCollection(this.blocks.keySet());
+    }
+    
+    /**
+     * Gets the number of block changes made.
+     * @return Number of changes
+     */
+    public int getChanges() {
+        return this.changes;
+    }
+    
+    /**
+     * Gets the problems found while running actions.
+     * @return Problem descriptions
+     */
+    public List<String> getProblems() {
+        return Collections.unmodifiableList(this.problems);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import info.varden.andesite.core.ActionExecutionContext;
+
+import java.util.List;
+
+/**
+ * Action execution context backed by Minecraft Forge.
+ * @author Marius
+ */
+public class ForgeActionExecutionContext implements ActionExecutionContext, PackageListener {
+    
+    /**
+     * Registry of interned block wrappers.
+     */
+    private final BlockWrapperRegistry blocks;
+    
+    /**
+     * Creates an execution context.
+     * @param blocks Registry of interned block wrappers
+     */
+    public ForgeActionExecutionContext(BlockWrapperRegistry blocks) {
+        this.blocks = blocks;
+    }
+    
+    /**
+     * Returns an Andesite block wrapper for the given block ID.
+     * @param block The block ID to wrap
+     * @return A block wrapper for use by the Andesite Project
+     */
+    @Override
+    public ForgeBlockWrapper getBlockWrapperFor(String block) {
+        return this.blocks.getFor(block);
+    }
+    
+    /**
+     * Gets the block wrapper registry of this context.
+     * @return Registry of interned block wrappers
+     */
+    public BlockWrapperRegistry getBlockWrappers() {
+        return this.blocks;
+    }
+    
+    /**
+     * Attributes subsequent block changes to the package's mod.
+     * @param pkg The package about to be executed
+     */
+    @Override
+    public void packageStarted(LoadedPackage pkg) {
+        this.blocks.setCurrentMod(pkg.project.properties.modid, pkg.getSequenceBase());
+    }
+    
+    /**
+     * Clears the mod block changes are attributed to.
+     * @param pkg The executed package
+     */
+    @Override
+    public void packageFinished(LoadedPackage pkg) {
+        this.blocks.setCurrentMod(null);
+    }
+    
+    /**
+     * Undoes the block changes and drop rules of a mod.
+     * @param modid ID of the mod being unloaded
+     */
+    @Override
+    public void packageRemoved(String modid) {
+        int blocks = this.blocks.removeChangesOf(modid);
+        int rules = DropDispatcher.instance().removeRulesOf(modid);
+        AndesiteML.info("Undid changes of " + modid + " to " + blocks + " blocks and " + rules + " drop rules");
+    }
+    
+    /**
+     * Applies batched block changes and compiles the drop tables of the
+     * added drop rules once all packages were executed.
+     */
+    @Override
+    public void loadFinished() {
+        int tables = DropDispatcher.instance().compilePending();
+        if (tables > 0) {
+            AndesiteML.info("Compiled drop tables of " + tables + " blocks");
+        }
+        if (this.blocks.isBatching()) {
+            List<PropertyChange> applied = this.blocks.applyChanges();
+            AndesiteML.info("Applied " + applied.size() + " batched block property changes");
+        }
+        if (this.blocks.getSkippedCount() > 0) {
+            AndesiteML.info("Skipped " + this.blocks.getSkippedCount() + " client-only block property changes on the dedicated server");
+        }
+    }
+}
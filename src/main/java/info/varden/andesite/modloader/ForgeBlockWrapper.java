@@ -31,14 +31,9 @@ import info.varden.andesite.core.wrapper.AndesiteItemStack;
 import info.varden.andesite.core.wrapper.StepSoundWrapper;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.minecraft.block.Block;
-import net.minecraft.item.ItemStack;
-import net.minecraftforge.common.MinecraftForge;
-import net.minecraftforge.event.world.BlockEvent;
-import net.minecraftforge.fml.common.eventhandler.EventPriority;
-import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
-import net.minecraftforge.fml.common.registry.GameData;
 
 /**
  * Wrapper for Minecraft blocks.
@@ -47,9 +42,44 @@ import net.minecraftforge.fml.common.registry.GameData;
 public class ForgeBlockWrapper implements BlockWrapper {
     
     /**
-     * The wrapped block.
+     * Interned step sound wrappers by Minecraft sound type.
      */
-    private Block block;
+    private static final ConcurrentHashMap<Block.SoundType, StepSoundWrapper> STEP_SOUNDS = new ConcurrentHashMap<Block.SoundType, StepSoundWrapper>();
+    /**
+     * Interned Minecraft sound types by step sound definition.
+     */
+    private static final ConcurrentHashMap<String, Block.SoundType> SOUND_TYPES = new ConcurrentHashMap<String, Block.SoundType>();
+    
+    /**
+     * The registry this wrapper was interned in.
+     */
+    private final BlockWrapperRegistry registry;
+    /**
+     * The ID of the wrapped block.
+     */
+    private final String name;
+    /**
+     * The wrapped block. For missing blocks this is air, which is only read.
+     */
+    private final Block block;
+    /**
+     * Whether the block ID is not present, so all changes are ignored.
+     */
+    private final boolean missing;
+    
+    /**
+     * Wraps a block.
+     * @param registry The registry interning this wrapper
+     * @param name The ID of the block
+     * @param block The block to wrap
+     * @param missing Whether the block ID is not present; the wrapper then ignores all changes
+     */
+    ForgeBlockWrapper(BlockWrapperRegistry registry, String name, Block block, boolean missing) {
+        this.registry = registry;
+        this.name = name;
+        this.block = block;
+        this.missing = missing;
+    }
     
     /**
      * Gets a block wrapper for the block by the given ID.
@@ -58,9 +88,31 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public ForgeBlockWrapper getFor(String name) {
-        ForgeBlockWrapper fbw = new ForgeBlockWrapper();
-        fbw.block = GameData.getBlockRegistry().getObject(name);
-        return fbw;
+        return this.registry.getFor(name);
+    }
+    
+    /**
+     * Gets the wrapped block.
+     * @return The wrapped block, or null if the block ID is not present
+     */
+    public Block getBlock() {
+        return this.missing ? null : this.block;
+    }
+    
+    /**
+     * Checks whether the block ID is not present on this installation.
+     * @return True if all changes to this wrapper are ignored
+     */
+    public boolean isMissing() {
+        return this.missing;
+    }
+    
+    /**
+     * Gets the ID of the wrapped block.
+     * @return The block ID
+     */
+    public String getName() {
+        return this.name;
     }
     
     /**
@@ -69,6 +121,10 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public float getLightLevel() {
+        Float pending = (Float) this.registry.getPendingValue(this, BlockProperty.LIGHT_LEVEL);
+        if (pending != null) {
+            return pending;
+        }
         return ((float) this.block.getLightValue()) / 15F;
     }
     
@@ -79,8 +135,7 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public ForgeBlockWrapper setLightLevel(float value) {
-        this.block.setLightLevel(value);
-        return this;
+        return set(BlockProperty.LIGHT_LEVEL, value);
     }
     
     /**
@@ -89,7 +144,20 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public StepSoundWrapper getStepSound() {
-        return new StepSoundWrapper(this.block.stepSound.getStepSound(), this.block.stepSound.getBreakSound(), this.block.stepSound.getPlaceSound(), this.block.stepSound.getVolume(), this.block.stepSound.getFrequency());
+        StepSoundWrapper pending = (StepSoundWrapper) this.registry.getPendingValue(this, BlockProperty.STEP_SOUND);
+        if (pending != null) {
+            return pending;
+        }
+        Block.SoundType type = this.block.stepSound;
+        StepSoundWrapper sound = STEP_SOUNDS.get(type);
+        if (sound == null) {
+            sound = new StepSoundWrapper(type.getStepSound(), type.getBreakSound(), type.getPlaceSound(), type.getVolume(), type.getFrequency());
+            StepSoundWrapper existing = STEP_SOUNDS.putIfAbsent(type, sound);
+            if (existing != null) {
+                sound = existing;
+            }
+        }
+        return sound;
     }
     
     /**
@@ -97,8 +165,38 @@ public class ForgeBlockWrapper implements BlockWrapper {
      * @param sound The step sound to set
      * @return The BlockWrapper instance
      */
-    public ForgeBlockWrapper setStepSound(final StepSoundWrapper sound) {
-        this.block.setStepSound(new Block.SoundType("", sound.getVolume(), sound.getFrequency()) {
+    public ForgeBlockWrapper setStepSound(StepSoundWrapper sound) {
+        return set(BlockProperty.STEP_SOUND, sound);
+    }
+    
+    /**
+     * Gets the Minecraft sound type for a step sound. Blocks with identical
+     * step sounds share one sound type.
+     * @param sound The step sound
+     * @return A sound type playing the given sounds
+     */
+    private static Block.SoundType toSoundType(StepSoundWrapper sound) {
+        String key = sound.getSoundName() + ' ' + sound.getBreakSound() + ' ' + sound.getPlaceSound() + ' ' + sound.getVolume() + ' ' + sound.getFrequency();
+        Block.SoundType type = SOUND_TYPES.get(key);
+        if (type == null) {
+            type = newSoundType(sound);
+            Block.SoundType existing = SOUND_TYPES.putIfAbsent(key, type);
+            if (existing != null) {
+                type = existing;
+            } else {
+                STEP_SOUNDS.putIfAbsent(type, sound);
+            }
+        }
+        return type;
+    }
+    
+    /**
+     * Creates a Minecraft sound type from a step sound.
+     * @param sound The step sound
+     * @return A sound type playing the given sounds
+     */
+    private static Block.SoundType newSoundType(final StepSoundWrapper sound) {
+        return new Block.SoundType("", sound.getVolume(), sound.getFrequency()) {
             @Override
             public String getBreakSound() {
                 return sound.getBreakSound();
@@ -113,8 +211,7 @@ public class ForgeBlockWrapper implements BlockWrapper {
             public String getPlaceSound() {
                 return sound.getPlaceSound();
             }
-        });
-        return this;
+        };
     }
     
     /**
@@ -123,6 +220,10 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public float getResistance() {
+        Float pending = (Float) this.registry.getPendingValue(this, BlockProperty.RESISTANCE);
+        if (pending != null) {
+            return pending;
+        }
         return this.block.getExplosionResistance(null) * 5F;
     }
     
@@ -133,8 +234,7 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public ForgeBlockWrapper setResistance(float resistance) {
-        this.block.setResistance(resistance / 3F);
-        return this;
+        return set(BlockProperty.RESISTANCE, resistance);
     }
     
     /**
@@ -143,6 +243,10 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public float getHardness() {
+        Float pending = (Float) this.registry.getPendingValue(this, BlockProperty.HARDNESS);
+        if (pending != null) {
+            return pending;
+        }
         return this.block.getBlockHardness(null, null);
     }
     
@@ -153,8 +257,7 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public ForgeBlockWrapper setHardness(float hardness) {
-        this.block.setHardness(hardness);
-        return this;
+        return set(BlockProperty.HARDNESS, hardness);
     }
     
     /**
@@ -163,6 +266,10 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public float getSlipperiness() {
+        Float pending = (Float) this.registry.getPendingValue(this, BlockProperty.SLIPPERINESS);
+        if (pending != null) {
+            return pending;
+        }
         return this.block.slipperiness;
     }
     
@@ -173,8 +280,7 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public ForgeBlockWrapper setSlipperiness(float value) {
-        this.block.slipperiness = value;
-        return this;
+        return set(BlockProperty.SLIPPERINESS, value);
     }
     
     /**
@@ -183,6 +289,10 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public float getParticleGravity() {
+        Float pending = (Float) this.registry.getPendingValue(this, BlockProperty.PARTICLE_GRAVITY);
+        if (pending != null) {
+            return pending;
+        }
         return this.block.blockParticleGravity;
     }
     
@@ -193,8 +303,7 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public ForgeBlockWrapper setParticleGravity(float value) {
-        this.block.blockParticleGravity = value;
-        return this;
+        return set(BlockProperty.PARTICLE_GRAVITY, value);
     }
     
     /**
@@ -203,17 +312,11 @@ public class ForgeBlockWrapper implements BlockWrapper {
      */
     @Override
     public ForgeBlockWrapper removeDefaultDrops() {
-        MinecraftForge.EVENT_BUS.register(new Object() {
-            /**
-             * Minecraft Forge block harvesting event handler.
-             * @param event Minecraft Forge block harvesting event
-             */
-            @SubscribeEvent(priority = EventPriority.LOW)
-            public void harvestDropsEvent(BlockEvent.HarvestDropsEvent event) {
-                event.drops.clear();
-                event.dropChance = 0.0F;
-            }
-        });
+        if (this.missing) {
+            AndesiteML.error("Cannot remove default drops: block " + this.name + " is not present");
+            return this;
+        }
+        DropDispatcher.instance().removeDefaultDrops(this.block, this.registry.getCurrentMod());
         return this;
     }
     
@@ -228,33 +331,98 @@ public class ForgeBlockWrapper implements BlockWrapper {
      * @param conditions Requirements for the player if a player broke the block
      * @return The BlockWrapper instance
      */
-    public ForgeBlockWrapper setConditionalDrops(final SilkTouchMode mode, final BlockBreakSource source, final int fortuneLevel, final List<AndesiteItemStack> items, final float dropChance, final boolean overrideDrops, final PlayerRequirements conditions) {
-        MinecraftForge.EVENT_BUS.register(new Object() {
-            /**
-             * Minecraft Forge block harvesting event handler.
-             * @param event Minecraft Forge block harvesting event
-             */
-            @SubscribeEvent(priority = EventPriority.LOWEST)
-            public void harvestDropsEvent(BlockEvent.HarvestDropsEvent event) {
-                if (
-                        (mode == SilkTouchMode.ANY || (mode == SilkTouchMode.SILKTOUCH) == event.isSilkTouching) &&
-                        (fortuneLevel == -1 || (event.fortuneLevel == fortuneLevel)) &&
-                        (source == BlockBreakSource.ANY || (source == BlockBreakSource.OTHER) == (event.harvester == null))
-                    ) {
-                    if (event.harvester != null && conditions != null && !conditions.satisfiedBy(ForgePlayerWrapper.getFor(event.harvester))) {
-                        return;
-                    }
-                    event.dropChance = dropChance;
-                    if (overrideDrops) {
-                        event.drops.clear();
-                    }
-                    for (AndesiteItemStack isw : items) {
-                        event.drops.add(ForgeItemStackTranslator.translate(isw));
-                    }
-                }
-            }
-        });
+    public ForgeBlockWrapper setConditionalDrops(SilkTouchMode mode, BlockBreakSource source, int fortuneLevel, List<AndesiteItemStack> items, float dropChance, boolean overrideDrops, PlayerRequirements conditions) {
+        if (this.missing) {
+            AndesiteML.error("Cannot set conditional drops: block " + this.name + " is not present");
+            return this;
+        }
+        String modid = this.registry.getCurrentMod();
+        DropDispatcher.instance().addConditionalDrops(this.block, new ConditionalDropRule(this.name, modid, this.registry.getPriority(modid), this.registry.nextSequence(), mode, source, fortuneLevel, items, dropChance, overrideDrops, conditions));
+        return this;
+    }
+    
+    /**
+     * Sets a block property, either directly or by recording it in the current
+     * batch. Changes to missing blocks are ignored.
+     * @param property The property to set
+     * @param value The value to set
+     * @return The BlockWrapper instance
+     */
+    private ForgeBlockWrapper set(BlockProperty property, Object value) {
+        if (this.missing || this.registry.skips(property)) {
+            return this;
+        }
+        if (this.registry.isBatching()) {
+            this.registry.record(this, property, value);
+        } else {
+            write(property, value);
+        }
         return this;
     }
+    
+    /**
+     * Reads the current value of a block property from the wrapped block.
+     * The step sound is returned as the block's own sound type.
+     * @param property The property to read
+     * @return The current value, suitable for {@link #restore(BlockProperty, Object)}
+     */
+    Object read(BlockProperty property) {
+        switch (property) {
+            case LIGHT_LEVEL:
+                return ((float) this.block.getLightValue()) / 15F;
+            case STEP_SOUND:
+                return this.block.stepSound;
+            case RESISTANCE:
+                return this.block.getExplosionResistance(null) * 5F;
+            case HARDNESS:
+                return this.block.getBlockHardness(null, null);
+            case SLIPPERINESS:
+                return this.block.slipperiness;
+            case PARTICLE_GRAVITY:
+                return this.block.blockParticleGravity;
+        }
+        return null;
+    }
+    
+    /**
+     * Restores a block property to a value returned by {@link #read(BlockProperty)}.
+     * @param property The property to restore
+     * @param value The value to restore
+     */
+    void restore(BlockProperty property, Object value) {
+        if (property == BlockProperty.STEP_SOUND) {
+            this.block.setStepSound((Block.SoundType) value);
+        } else {
+            write(property, value);
+        }
+    }
+    
+    /**
+     * Writes a block property to the wrapped block.
+     * @param property The property to write
+     * @param value The value to write
+     */
+    void write(BlockProperty property, Object value) {
+        switch (property) {
+            case LIGHT_LEVEL:
+                this.block.setLightLevel((Float) value);
+                break;
+            case STEP_SOUND:
+                this.block.setStepSound(toSoundType((StepSoundWrapper) value));
+                break;
+            case RESISTANCE:
+                this.block.setResistance((Float) value / 3F);
+                break;
+            case HARDNESS:
+                this.block.setHardness((Float) value);
+                break;
+            case SLIPPERINESS:
+                this.block.slipperiness = (Float) value;
+                break;
+            case PARTICLE_GRAVITY:
+                this.block.blockParticleGravity = (Float) value;
+                break;
+        }
+    }
 
 }
@@ -6,10 +6,11 @@
 package info.varden.andesite.modloader;
 
 import info.varden.andesite.core.wrapper.AndesiteItemStack;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import net.minecraft.block.Block;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
-import net.minecraftforge.fml.common.registry.GameData;
 import net.minecraftforge.fml.common.registry.GameRegistry;
 
 /**
@@ -17,18 +18,151 @@ import net.minecraftforge.fml.common.registry.GameRegistry;
  * @author Marius
  */
 public abstract class ForgeItemStackTranslator {
+    /**
+     * Resolved items and blocks by ID, including IDs that could not be resolved.
+     */
+    private static final ConcurrentHashMap<String, ResolvedItem> RESOLVED = new ConcurrentHashMap<String, ResolvedItem>();
+    /**
+     * Interned item stack templates by ID, amount and metadata.
+     */
+    private static final ConcurrentHashMap<String, ItemStackTemplate> TEMPLATES = new ConcurrentHashMap<String, ItemStackTemplate>();
+    /**
+     * Interned template lists by the keys of their templates.
+     */
+    private static final ConcurrentHashMap<String, ItemStackTemplate[]> TEMPLATE_LISTS = new ConcurrentHashMap<String, ItemStackTemplate[]>();
+    
     public static AndesiteItemStack translate(ItemStack stack) {
         return AndesiteItemStack.create(GameRegistry.findUniqueIdentifierFor(stack.getItem()).toString(), stack.stackSize, stack.getMetadata());
     }
     
     public static ItemStack translate(AndesiteItemStack stack) {
-        if (GameData.getItemRegistry().containsKey(stack.getID())) {
-            return new ItemStack(Item.getByNameOrId(stack.getID()), stack.getAmount(), stack.getMeta());
-        } else if (GameData.getBlockRegistry().containsKey(stack.getID())) {
-            return new ItemStack(Block.getBlockFromName(stack.getID()), stack.getAmount(), stack.getMeta());
-        } else {
-            AndesiteML.error("The item name " + stack.getID() + " is not present as an item or block on this Minecraft installation!");
-            return new ItemStack(Block.getBlockFromName("minecraft:air"), 0);
+        return resolve(stack.getID()).newStack(stack.getAmount(), stack.getMeta());
+    }
+    
+    /**
+     * Translates a list of item stacks ahead of time. Identical stacks and
+     * identical lists share one interned instance, so the result must not be
+     * modified.
+     * @param stacks The item stacks to translate
+     * @return Templates creating the translated item stacks
+     */
+    public static ItemStackTemplate[] compile(List<AndesiteItemStack> stacks) {
+        ItemStackTemplate[] templates = new ItemStackTemplate[stacks.size()];
+        StringBuilder listKey = new StringBuilder();
+        for (int i = 0; i < templates.length; i++) {
+            AndesiteItemStack stack = stacks.get(i);
+            String key = stack.getID() + ' ' + stack.getAmount() + ' ' + stack.getMeta();
+            templates[i] = TEMPLATES.get(key);
+            if (templates[i] == null) {
+                ItemStackTemplate template = new ItemStackTemplate(resolve(stack.getID()), stack.getAmount(), stack.getMeta());
+                ItemStackTemplate existing = TEMPLATES.putIfAbsent(key, template);
+                templates[i] = existing == null ? template : existing;
+            }
+            listKey.append(key).append('\n');
+        }
+        ItemStackTemplate[] existing = TEMPLATE_LISTS.putIfAbsent(listKey.toString(), templates);
+        return existing == null ? templates : existing;
+    }
+    
+    /**
+     * Resolves an item or block ID, caching the result.
+     * @param id The item or block ID
+     * @return The resolved item
+     */
+    public static ResolvedItem resolve(String id) {
+        ResolvedItem resolved = RESOLVED.get(id);
+        if (resolved != null) {
+            return resolved;
+        }
+        resolved = lookup(id);
+        ResolvedItem existing = RESOLVED.putIfAbsent(id, resolved);
+        if (existing != null) {
+            return existing;
+        }
+        if (resolved.isMissing()) {
+            AndesiteML.error("The item name " + id + " is not present as an item or block on this Minecraft installation!");
+        }
+        return resolved;
+    }
+    
+    /**
+     * Clears all cached item and block lookups.
+     */
+    public static void clearCache() {
+        RESOLVED.clear();
+        TEMPLATES.clear();
+        TEMPLATE_LISTS.clear();
+    }
+    
+    /**
+     * Looks up an item or block ID in the game registries.
+     * @param id The item or block ID
+     * @return The resolved item
+     */
+    private static ResolvedItem lookup(String id) {
+        GameRegistryView registries = GameRegistryView.get();
+        Item item = registries.getItem(id);
+        if (item != null) {
+            return new ResolvedItem(item, null, false);
+        }
+        Block block = registries.getBlock(id);
+        if (block != null) {
+            return new ResolvedItem(null, block, false);
+        }
+        return new ResolvedItem(null, registries.getBlock(GameRegistryView.AIR), true);
+    }
+    
+    /**
+     * An item or block resolved from its ID.
+     */
+    public static class ResolvedItem {
+        /**
+         * The resolved item, or null if the ID refers to a block.
+         */
+        private final Item item;
+        /**
+         * The resolved block, or null if the ID refers to an item.
+         */
+        private final Block block;
+        /**
+         * Whether the ID could not be resolved.
+         */
+        private final boolean missing;
+        
+        /**
+         * Creates a resolved item.
+         * @param item The resolved item, or null
+         * @param block The resolved block, or null
+         * @param missing Whether the ID could not be resolved
+         */
+        ResolvedItem(Item item, Block block, boolean missing) {
+            this.item = item;
+            this.block = block;
+            this.missing = missing;
+        }
+        
+        /**
+         * Checks whether the ID could not be resolved.
+         * @return True if the ID is not present as an item or block
+         */
+        public boolean isMissing() {
+            return this.missing;
+        }
+        
+        /**
+         * Creates an item stack of the resolved item.
+         * @param amount The stack size
+         * @param meta The item metadata
+         * @return A new item stack
+         */
+        public ItemStack newStack(int amount, int meta) {
+            if (this.missing) {
+                return new ItemStack(this.block, 0);
+            } else if (this.item != null) {
+                return new ItemStack(this.item, amount, meta);
+            } else {
+                return new ItemStack(this.block, amount, meta);
+            }
         }
     }
 }
@@ -23,19 +23,54 @@
  */
 package info.varden.andesite.modloader;
 
+import info.varden.andesite.core.PlayerRequirements;
 import info.varden.andesite.core.wrapper.PlayerWrapper;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
 
 /**
  * Wrapper for EntityPlayer.
+ * <p>
+ * There is one wrapper per player, replaced whenever the player entity is
+ * recreated, for example on respawn. Wrappers are evicted when the player
+ * entity is cloned or the player logs out. Each wrapper remembers which
+ * player requirements the player satisfied during the current server tick;
+ * the results are forgotten at the end of the tick, or as soon as the player
+ * is changed through the wrapper. Harvest events run on the server thread,
+ * so the results are not synchronized.
  * @author Marius
  */
 public class ForgePlayerWrapper implements PlayerWrapper {
     
+    /**
+     * Wrappers by player UUID.
+     */
+    private static final Map<UUID, ForgePlayerWrapper> WRAPPERS = Collections.synchronizedMap(new HashMap<UUID, ForgePlayerWrapper>());
+    /**
+     * Number of server ticks that have ended.
+     */
+    private static volatile int tick = 0;
+    
     /**
      * The wrapped player.
      */
     private final EntityPlayer player;
+    /**
+     * Requirement results of the current tick.
+     */
+    private final Map<PlayerRequirements, Boolean> satisfied = new IdentityHashMap<PlayerRequirements, Boolean>();
+    /**
+     * The tick the requirement results belong to.
+     */
+    private int resultTick = -1;
     
     /**
      * Wraps a player entity and creates a PlayerWrapper.
@@ -46,12 +81,52 @@ public class ForgePlayerWrapper implements PlayerWrapper {
     }
     
     /**
-     * Creates a PlayerWrapper for the given player.
+     * Gets the PlayerWrapper for the given player.
      * @param player Player entity to wrap.
      * @return A PlayerWrapper instance.
      */
     public static ForgePlayerWrapper getFor(EntityPlayer player) {
-        return new ForgePlayerWrapper(player);
+        UUID id = player.getUniqueID();
+        ForgePlayerWrapper wrapper = WRAPPERS.get(id);
+        if (wrapper == null || wrapper.player != player) {
+            wrapper = new ForgePlayerWrapper(player);
+            WRAPPERS.put(id, wrapper);
+        }
+        return wrapper;
+    }
+    
+    /**
+     * Forgets the wrapper of a player.
+     * @param player The player entity
+     */
+    static void evict(EntityPlayer player) {
+        WRAPPERS.remove(player.getUniqueID());
+    }
+    
+    /**
+     * Checks whether the player satisfies the given requirements, reusing the result within a server tick.
+     * @param requirements The requirements to check
+     * @return True if the player satisfies the requirements
+     */
+    public boolean satisfies(PlayerRequirements requirements) {
+        int now = tick;
+        if (this.resultTick != now) {
+            this.satisfied.clear();
+            this.resultTick = now;
+        }
+        Boolean result = this.satisfied.get(requirements);
+        if (result == null) {
+            result = requirements.satisfiedBy(this) ? Boolean.TRUE : Boolean.FALSE;
+            this.satisfied.put(requirements, result);
+        }
+        return result;
+    }
+    
+    /**
+     * Forgets the requirement results of this player.
+     */
+    public void invalidate() {
+        this.satisfied.clear();
     }
     
     /**
@@ -71,6 +146,50 @@ public class ForgePlayerWrapper implements PlayerWrapper {
     @Override
     public ForgePlayerWrapper setAbsorptionAmount(float amount) {
         this.player.setAbsorptionAmount(amount);
+        invalidate();
         return this;
     }
+    
+    /**
+     * Minecraft Forge server tick handler expiring requirement results.
+     */
+    public static class TickHandler {
+        
+        /**
+         * Expires the requirement results of all players at the end of a server tick.
+         * @param event Minecraft Forge server tick event
+         */
+        @SubscribeEvent
+        public void onServerTick(TickEvent.ServerTickEvent event) {
+            if (event.phase == TickEvent.Phase.END) {
+                tick++;
+            }
+        }
+    }
+    
+    /**
+     * Minecraft Forge and FML player event handler evicting the wrappers of
+     * replaced and disconnected player entities.
+     */
+    public static class EvictionHandler {
+        
+        /**
+         * Evicts the wrapper of a player entity replaced on respawn or when
+         * returning from the End.
+         * @param event Minecraft Forge player clone event
+         */
+        @SubscribeEvent
+        public void onClone(PlayerEvent.Clone event) {
+            evict(event.original);
+        }
+        
+        /**
+         * Evicts the wrapper of a player that logged out.
+         * @param event FML player logout event
+         */
+        @SubscribeEvent
+        public void onLoggedOut(PlayerLoggedOutEvent event) {
+            evict(event.player);
+        }
+    }
 }
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import net.minecraft.block.Block;
+import net.minecraft.item.Item;
+import net.minecraftforge.fml.common.registry.GameData;
+
+/**
+ * View of the item and block registries used to resolve IDs.
+ * <p>
+ * By default this reads the Forge game registries. Headless tools and
+ * benchmarks can install their own view instead.
+ * @author Marius
+ */
+public abstract class GameRegistryView {
+    
+    /**
+     * ID of the air block.
+     */
+    public static final String AIR = "minecraft:air";
+    
+    /**
+     * The active registry view.
+     */
+    private static volatile GameRegistryView current = new ForgeView();
+    
+    /**
+     * Gets the active registry view.
+     * @return The registry view
+     */
+    public static GameRegistryView get() {
+        return current;
+    }
+    
+    /**
+     * Replaces the active registry view.
+     * @param view The registry view to use
+     */
+    public static void set(GameRegistryView view) {
+        current = view;
+    }
+    
+    /**
+     * Looks up an item.
+     * @param id The item ID
+     * @return The item, or null if no item is registered by that ID
+     */
+    public abstract Item getItem(String id);
+    
+    /**
+     * Looks up a block.
+     * @param id The block ID
+     * @return The block, or null if no block is registered by that ID
+     */
+    public abstract Block getBlock(String id);
+    
+    /**
+     * Registry view backed by the Forge game registries.
+     */
+    private static class ForgeView extends GameRegistryView {
+        
+        /**
+         * Looks up an item in the Forge item registry.
+         * @param id The item ID
+         * @return The item, or null if no item is registered by that ID
+         */
+        @Override
+        public Item getItem(String id) {
+            return GameData.getItemRegistry().containsKey(id) ? Item.getByNameOrId(id) : null;
+        }
+        
+        /**
+         * Looks up a block in the Forge block registry.
+         * @param id The block ID
+         * @return The block, or null if no block is registered by that ID
+         */
+        @Override
+        public Block getBlock(String id) {
+            return GameData.getBlockRegistry().containsKey(id) ? Block.getBlockFromName(id) : null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.util.Map;
+
+/**
+ * Rough shallow heap size estimates of the runtime state kept after loading.
+ * <p>
+ * The estimates assume a 64-bit JVM with compressed references. They are
+ * meant for comparing mods with each other, not for exact accounting.
+ * @author Marius
+ */
+final class HeapEstimate {
+    
+    /**
+     * Size of an object header.
+     */
+    static final long OBJECT = 12L;
+    /**
+     * Size of an array header.
+     */
+    static final long ARRAY = 16L;
+    /**
+     * Size of a reference.
+     */
+    static final long REFERENCE = 4L;
+    /**
+     * Mod ID used for state not attributed to any mod.
+     */
+    static final String UNKNOWN_MOD = "(unknown)";
+    
+    /**
+     * This class only has static helpers.
+     */
+    private HeapEstimate() {
+    }
+    
+    /**
+     * Estimates the size of an object.
+     * @param fieldBytes Total size of the object's fields
+     * @return Estimated size, aligned to 8 bytes
+     */
+    static long object(long fieldBytes) {
+        return align(OBJECT + fieldBytes);
+    }
+    
+    /**
+     * Estimates the size of an array.
+     * @param length Number of elements
+     * @param elementBytes Size of a single element
+     * @return Estimated size, aligned to 8 bytes
+     */
+    static long array(int length, long elementBytes) {
+        return align(ARRAY + length * elementBytes);
+    }
+    
+    /**
+     * Adds an estimate to the total of a mod.
+     * @param sizes Estimated sizes by mod ID
+     * @param modid The mod ID, or null if unknown
+     * @param bytes The estimate to add
+     */
+    static void add(Map<String, Long> sizes, String modid, long bytes) {
+        String key = modid == null ? UNKNOWN_MOD : modid;
+        Long total = sizes.get(key);
+        sizes.put(key, total == null ? bytes : total + bytes);
+    }
+    
+    /**
+     * Aligns a size to 8 bytes.
+     * @param bytes The size
+     * @return The aligned size
+     */
+    private static long align(long bytes) {
+        return (bytes + 7L) & ~7L;
+    }
+}
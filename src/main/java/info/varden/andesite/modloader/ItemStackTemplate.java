@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import net.minecraft.item.ItemStack;
+
+/**
+ * A pre-resolved item stack definition.
+ * @author Marius
+ */
+public class ItemStackTemplate {
+    
+    /**
+     * The resolved item or block.
+     */
+    private final ForgeItemStackTranslator.ResolvedItem item;
+    /**
+     * The stack size.
+     */
+    private final int amount;
+    /**
+     * The item metadata.
+     */
+    private final int meta;
+    
+    /**
+     * Creates an item stack template.
+     * @param item The resolved item or block
+     * @param amount The stack size
+     * @param meta The item metadata
+     */
+    public ItemStackTemplate(ForgeItemStackTranslator.ResolvedItem item, int amount, int meta) {
+        this.item = item;
+        this.amount = amount;
+        this.meta = meta;
+    }
+    
+    /**
+     * Creates a new item stack from this template.
+     * @return A new item stack
+     */
+    public ItemStack create() {
+        return this.item.newStack(this.amount, this.meta);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Load-time measurements of a complete Andesite load session.
+ * @author Marius
+ */
+public class LoadProfile {
+    
+    /**
+     * Number of loader threads used.
+     */
+    private final int threads;
+    /**
+     * Wall time of each loader stage in nanoseconds.
+     */
+    private final Map<String, Long> stages = new LinkedHashMap<String, Long>();
+    /**
+     * Profiles of all packages, in load order.
+     */
+    private final List<PackageProfile> packages;
+    
+    /**
+     * Creates a load profile.
+     * @param threads Number of loader threads used
+     * @param scanTime Wall time of the scan stage in nanoseconds
+     * @param readTime Wall time of the read stage in nanoseconds
+     * @param executeTime Wall time of the execute stage in nanoseconds
+     * @param packages Profiles of all packages, in load order
+     */
+    public LoadProfile(int threads, long scanTime, long readTime, long executeTime, List<PackageProfile> packages) {
+        this.threads = threads;
+        this.stages.put("scan", scanTime);
+        this.stages.put("read", readTime);
+        this.stages.put("execute", executeTime);
+        this.packages = Collections.unmodifiableList(new ArrayList<PackageProfile>(packages));
+    }
+    
+    /**
+     * Gets the number of loader threads used.
+     * @return Number of loader threads
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+    
+    /**
+     * Gets the wall time of each loader stage.
+     * @return Stage wall times in nanoseconds by stage name
+     */
+    public Map<String, Long> getStageTimes() {
+        return Collections.unmodifiableMap(this.stages);
+    }
+    
+    /**
+     * Gets the profiles of all packages.
+     * @return Package profiles in load order
+     */
+    public List<PackageProfile> getPackages() {
+        return this.packages;
+    }
+    
+    /**
+     * Gets the slowest packages by total read and execution time.
+     * @param count Maximum number of packages to return
+     * @return The slowest packages, slowest first
+     */
+    public List<PackageProfile> getSlowestPackages(int count) {
+        List<PackageProfile> sorted = new ArrayList<PackageProfile>(this.packages);
+        Collections.sort(sorted, new Comparator<PackageProfile>() {
+            @Override
+            public int compare(PackageProfile a, PackageProfile b) {
+                long ta = a.getReadTime() + a.getStageTime(PackageProfile.STAGE_EXECUTE);
+                long tb = b.getReadTime() + b.getStageTime(PackageProfile.STAGE_EXECUTE);
+                return ta < tb ? 1 : (ta > tb ? -1 : 0);
+            }
+        });
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+    
+    /**
+     * Logs a summary of the slowest packages and actions.
+     * @param count Number of packages and actions to list
+     */
+    public void logSummary(int count) {
+        for (PackageProfile pkg : getSlowestPackages(count)) {
+            AndesiteML.info("Slow package " + pkg.getFile() + " (" + pkg.getModid() + "): " + describe(pkg.getStageTimes()));
+        }
+        List<PackageProfile.ActionProfile> actions = new ArrayList<PackageProfile.ActionProfile>();
+        for (PackageProfile pkg : this.packages) {
+            actions.addAll(pkg.getActions());
+        }
+        Collections.sort(actions, new Comparator<PackageProfile.ActionProfile>() {
+            @Override
+            public int compare(PackageProfile.ActionProfile a, PackageProfile.ActionProfile b) {
+                return a.nanos < b.nanos ? 1 : (a.nanos > b.nanos ? -1 : 0);
+            }
+        });
+        for (PackageProfile.ActionProfile action : actions.subList(0, Math.min(count, actions.size()))) {
+            AndesiteML.info("Slow action " + (action.index + 1) + " (" + action.actionClass + ") of " + action.modid + ": " + (action.nanos / 1000L) + " us");
+        }
+    }
+    
+    /**
+     * Writes the profile as JSON.
+     * @param file The file to write
+     * @throws IOException If the file could not be written
+     */
+    public void write(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            gson.toJson(this, out);
+        } finally {
+            out.close();
+        }
+    }
+    
+    /**
+     * Describes stage times.
+     * @param stages Stage times in nanoseconds by stage name
+     * @return Human readable description
+     */
+    private static String describe(Map<String, Long> stages) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> e : stages.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(e.getKey()).append(' ').append(e.getValue() / 1000000L).append(" ms");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import info.varden.andesite.core.AndesiteProject;
+
+import java.io.File;
+
+/**
+ * Result of reading a single Andesite mod package.
+ * @author Marius
+ */
+public class LoadedPackage {
+    
+    /**
+     * The package file.
+     */
+    public final File file;
+    /**
+     * The project read from the package, or null if reading failed.
+     */
+    public final AndesiteProject project;
+    /**
+     * The reason reading failed, or null if it succeeded.
+     */
+    public final Throwable failure;
+    /**
+     * Time spent reading, decrypting and verifying the package, in nanoseconds.
+     */
+    public final long readTime;
+    /**
+     * Whether the project was restored from the verification cache.
+     */
+    public final boolean cached;
+    /**
+     * Load-time measurements of the package.
+     */
+    public final PackageProfile profile;
+    /**
+     * Sequence number of the first change made while the package executes.
+     */
+    private long sequenceBase = 0L;
+    
+    /**
+     * Creates a successfully read package.
+     * @param file The package file
+     * @param project The project read from the package
+     * @param profile Load-time measurements of the package
+     * @param cached Whether the project was restored from the verification cache
+     */
+    public LoadedPackage(File file, AndesiteProject project, PackageProfile profile, boolean cached) {
+        this.file = file;
+        this.project = project;
+        this.failure = null;
+        this.profile = profile;
+        this.readTime = profile.getReadTime();
+        this.cached = cached;
+        profile.setCached(cached);
+    }
+    
+    /**
+     * Creates a package that failed to read.
+     * @param file The package file
+     * @param failure The reason reading failed
+     * @param profile Load-time measurements of the package
+     */
+    public LoadedPackage(File file, Throwable failure, PackageProfile profile) {
+        this.file = file;
+        this.project = null;
+        this.failure = failure;
+        this.profile = profile;
+        this.readTime = profile.getReadTime();
+        this.cached = false;
+        profile.setFailure(failure);
+    }
+    
+    /**
+     * Checks whether the package was read successfully.
+     * @return True if the project is available
+     */
+    public boolean isLoaded() {
+        return this.project != null;
+    }
+    
+    /**
+     * Gets the sequence number of the first change made while the package
+     * executes. Changes of packages executed later have higher numbers.
+     * @return The first sequence number
+     */
+    public long getSequenceBase() {
+        return this.sequenceBase;
+    }
+    
+    /**
+     * Sets the sequence number of the first change made while the package
+     * executes.
+     * @param sequenceBase The first sequence number
+     */
+    void setSequenceBase(long sequenceBase) {
+        this.sequenceBase = sequenceBase;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+/**
+ * Listener notified by the package loader while packages are executed.
+ * @author Marius
+ */
+public interface PackageListener {
+    
+    /**
+     * Called before the actions of a package are executed.
+     * @param pkg The package about to be executed
+     */
+    void packageStarted(LoadedPackage pkg);
+    
+    /**
+     * Called after the actions of a package were executed.
+     * @param pkg The executed package
+     */
+    void packageFinished(LoadedPackage pkg);
+    
+    /**
+     * Called before a previously executed package is reloaded or removed.
+     * The changes made by the mod should be undone.
+     * @param modid ID of the mod being unloaded
+     */
+    void packageRemoved(String modid);
+    
+    /**
+     * Called after all packages were executed.
+     */
+    void loadFinished();
+}
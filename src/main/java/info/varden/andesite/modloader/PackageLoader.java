@@ -0,0 +1,720 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import info.varden.andesite.core.Action;
+import info.varden.andesite.core.ActionExecutionContext;
+import info.varden.andesite.core.AndesiteProject;
+import info.varden.andesite.io.AndesiteIO;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SignatureException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+
+/**
+ * Staged loader for Andesite mod packages.
+ * <p>
+ * Packages are read, decrypted and verified in parallel on a bounded worker
+ * pool. Their actions are then executed on the calling thread, package by
+ * package in file name order, so that Forge state is only ever touched from
+ * the main thread and always in the same order.
+ * <p>
+ * Actions of deferrable classes are queued instead of executed, and run by
+ * {@link #runDeferredActions()} in the same package and action order once
+ * the world is about to load.
+ * @author Marius
+ */
+public class PackageLoader {
+    
+    /**
+     * File name extension of Andesite mod packages.
+     */
+    public static final String PACKAGE_EXTENSION = ".anp";
+    
+    /**
+     * Directory to load packages from.
+     */
+    private final File modDir;
+    /**
+     * Maximum number of worker threads used to read packages.
+     */
+    private final int threads;
+    /**
+     * Verification cache, or null if caching is disabled.
+     */
+    private final VerifiedPackageCache cache;
+    /**
+     * Listeners notified while packages are executed.
+     */
+    private final List<PackageListener> listeners = new ArrayList<PackageListener>();
+    /**
+     * Class names of actions whose execution is deferred.
+     */
+    private Set<String> deferrable = Collections.emptySet();
+    /**
+     * Indices of deferred actions by package, in load order.
+     */
+    private final Map<LoadedPackage, List<Integer>> deferred = new LinkedHashMap<LoadedPackage, List<Integer>>();
+    /**
+     * Execution context of the last load, used for deferred actions.
+     */
+    private ActionExecutionContext context = null;
+    /**
+     * Limit on the total size of packages decrypted at the same time.
+     */
+    private ReadBudget budget = new ReadBudget(0L);
+    /**
+     * IDs of the mods executed from each package, by absolute package path.
+     */
+    private final Map<String, String> modids = new HashMap<String, String>();
+    /**
+     * Load order of each executed package, by absolute package path. A
+     * reloaded package keeps its place, so its changes win and lose the same
+     * conflicts as after a restart.
+     */
+    private final Map<String, Integer> loadOrder = new HashMap<String, Integer>();
+    /**
+     * Wall time of the scan stage, in nanoseconds.
+     */
+    private long scanTime = 0L;
+    /**
+     * Wall time of the read stage, in nanoseconds.
+     */
+    private long readTime = 0L;
+    /**
+     * Wall time of the execute stage, in nanoseconds.
+     */
+    private long executeTime = 0L;
+    /**
+     * Measurements of the last load, or null.
+     */
+    private LoadProfile profile = null;
+    
+    /**
+     * Creates a loader for the given directory.
+     * @param modDir Directory containing Andesite mod packages
+     * @param threads Maximum number of worker threads used to read packages
+     */
+    public PackageLoader(File modDir, int threads) {
+        this(modDir, threads, null);
+    }
+    
+    /**
+     * Creates a loader for the given directory using a verification cache.
+     * @param modDir Directory containing Andesite mod packages
+     * @param threads Maximum number of worker threads used to read packages
+     * @param cache Verification cache, or null to always verify packages
+     */
+    public PackageLoader(File modDir, int threads, VerifiedPackageCache cache) {
+        this.modDir = modDir;
+        this.threads = Math.max(1, threads);
+        this.cache = cache;
+    }
+    
+    /**
+     * Adds a listener notified while packages are executed.
+     * @param listener The listener to add
+     */
+    public void addListener(PackageListener listener) {
+        this.listeners.add(listener);
+    }
+    
+    /**
+     * Sets the actions whose execution is deferred until {@link #runDeferredActions()}.
+     * @param classNames Fully qualified class names of deferrable actions
+     */
+    public void setDeferrableActions(Collection<String> classNames) {
+        this.deferrable = new HashSet<String>(classNames);
+    }
+    
+    /**
+     * Limits the total size of packages decrypted at the same time.
+     * @param bytes Maximum number of package bytes in flight, or 0 for no limit
+     */
+    public void setReadBudget(long bytes) {
+        this.budget = new ReadBudget(bytes);
+    }
+    
+    /**
+     * Loads all packages in the mod directory and executes their actions.
+     * @param context Execution context passed to every action
+     */
+    public void load(ActionExecutionContext context) {
+        long start = System.nanoTime();
+        File[] files = findPackages();
+        this.scanTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        if (this.cache != null) {
+            this.cache.load();
+        }
+        List<LoadedPackage> packages = readPackages(files);
+        if (this.cache != null) {
+            this.cache.save();
+        }
+        this.readTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        executePackages(packages, context);
+        this.executeTime = System.nanoTime() - start;
+        
+        List<PackageProfile> profiles = new ArrayList<PackageProfile>(packages.size());
+        for (LoadedPackage pkg : packages) {
+            profiles.add(pkg.profile);
+        }
+        this.profile = new LoadProfile(this.threads, this.scanTime, this.readTime, this.executeTime, profiles);
+        reportTimings(packages);
+    }
+    
+    /**
+     * Finds all mod packages in the mod directory, sorted by file name.
+     * @return Package files in load order
+     */
+    public File[] findPackages() {
+        File[] files = this.modDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(PACKAGE_EXTENSION);
+            }
+        });
+        if (files == null) {
+            AndesiteML.warn("Mod directory " + this.modDir + " could not be listed; no Andesite mods will be loaded");
+            return new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        return files;
+    }
+    
+    /**
+     * Reads, decrypts and verifies the given packages in parallel.
+     * @param files Package files to read
+     * @return Read results, in the same order as the given files
+     */
+    public List<LoadedPackage> readPackages(File[] files) {
+        List<LoadedPackage> packages = new ArrayList<LoadedPackage>(files.length);
+        if (files.length == 0) {
+            return packages;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(this.threads, files.length), new LoaderThreadFactory());
+        try {
+            List<Future<LoadedPackage>> futures = new ArrayList<Future<LoadedPackage>>(files.length);
+            for (File file : files) {
+                futures.add(pool.submit(new ReadTask(file, this.cache, this.budget)));
+            }
+            for (int i = 0; i < files.length; i++) {
+                packages.add(await(files[i], futures.get(i)));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return packages;
+    }
+    
+    /**
+     * Executes the actions of all successfully read packages, in order. A
+     * package whose action throws is skipped from that action on, and loading
+     * continues with the next package.
+     * @param packages Packages to execute
+     * @param context Execution context passed to every action
+     */
+    public void executePackages(List<LoadedPackage> packages, ActionExecutionContext context) {
+        this.context = context;
+        for (LoadedPackage pkg : packages) {
+            AndesiteML.setCurrentlyLoading(null);
+            AndesiteML.info("Reading mod {}", pkg.file.getName());
+            if (!pkg.isLoaded()) {
+                reportReadFailure(pkg.failure);
+                continue;
+            }
+            String modid = pkg.project.properties.modid;
+            if (this.modids.containsValue(modid)) {
+                AndesiteML.error("Skipping {}: mod {} is already loaded from another package", pkg.file.getName(), modid);
+                continue;
+            }
+            AndesiteML.setCurrentlyLoading(modid);
+            pkg.profile.setModid(modid);
+            this.modids.put(pkg.file.getAbsolutePath(), modid);
+            pkg.setSequenceBase(sequenceBase(pkg, false));
+            long packageStart = System.nanoTime();
+            for (PackageListener listener : this.listeners) {
+                listener.packageStarted(pkg);
+            }
+            Action[] actions = pkg.project.getAllActions();
+            AndesiteML.info("Found {} actions", actions.length);
+            try {
+                for (int i = 0; i < actions.length; i++) {
+                    if (this.deferrable.contains(actions[i].getClass().getName())) {
+                        AndesiteML.info("Deferring action {} of {}", i + 1, actions.length);
+                        defer(pkg, i);
+                    } else {
+                        AndesiteML.info("Executing action {} of {}", i + 1, actions.length);
+                        executeAction(pkg, actions, i, context);
+                    }
+                }
+            } catch (RuntimeException e) {
+                this.deferred.remove(pkg);
+                reportActionFailure(pkg, e);
+            }
+            for (PackageListener listener : this.listeners) {
+                listener.packageFinished(pkg);
+            }
+            pkg.profile.record(PackageProfile.STAGE_EXECUTE, System.nanoTime() - packageStart);
+        }
+        AndesiteML.setCurrentlyLoading(null);
+        for (PackageListener listener : this.listeners) {
+            listener.loadFinished();
+        }
+    }
+    
+    /**
+     * Executes all deferred actions, package by package in load order.
+     * @return Number of actions executed
+     */
+    public int runDeferredActions() {
+        if (this.deferred.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        for (Map.Entry<LoadedPackage, List<Integer>> entry : this.deferred.entrySet()) {
+            LoadedPackage pkg = entry.getKey();
+            AndesiteML.setCurrentlyLoading(pkg.project.properties.modid);
+            pkg.setSequenceBase(sequenceBase(pkg, true));
+            long packageStart = System.nanoTime();
+            for (PackageListener listener : this.listeners) {
+                listener.packageStarted(pkg);
+            }
+            Action[] actions = pkg.project.getAllActions();
+            try {
+                for (int i : entry.getValue()) {
+                    AndesiteML.info("Executing deferred action {} of {}", i + 1, actions.length);
+                    executeAction(pkg, actions, i, this.context);
+                    count++;
+                }
+            } catch (RuntimeException e) {
+                reportActionFailure(pkg, e);
+            }
+            for (PackageListener listener : this.listeners) {
+                listener.packageFinished(pkg);
+            }
+            pkg.profile.record(PackageProfile.STAGE_EXECUTE, System.nanoTime() - packageStart);
+        }
+        this.deferred.clear();
+        AndesiteML.setCurrentlyLoading(null);
+        for (PackageListener listener : this.listeners) {
+            listener.loadFinished();
+        }
+        return count;
+    }
+    
+    /**
+     * Reloads changed packages and unloads removed packages. The changes of
+     * the affected mods are undone first; other mods are not executed again.
+     * @param changed Added or changed package files
+     * @param removed Removed package files
+     */
+    public void reload(List<File> changed, List<File> removed) {
+        long start = System.nanoTime();
+        for (File file : removed) {
+            unload(file);
+            if (this.cache != null) {
+                this.cache.remove(file);
+            }
+        }
+        for (File file : changed) {
+            unload(file);
+        }
+        List<LoadedPackage> packages = readPackages(changed.toArray(new File[changed.size()]));
+        if (this.cache != null) {
+            this.cache.save();
+        }
+        executePackages(packages, this.context);
+        runDeferredActions();
+        AndesiteML.info("Reloaded " + changed.size() + " and removed " + removed.size() + " packages in " + millis(System.nanoTime() - start) + " ms");
+    }
+    
+    /**
+     * Undoes the changes of the mod executed from a package.
+     * @param file The package file
+     */
+    private void unload(File file) {
+        String modid = this.modids.remove(file.getAbsolutePath());
+        Iterator<LoadedPackage> it = this.deferred.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().file.equals(file)) {
+                it.remove();
+            }
+        }
+        if (modid == null) {
+            return;
+        }
+        for (PackageListener listener : this.listeners) {
+            listener.packageRemoved(modid);
+        }
+    }
+    
+    /**
+     * Gets the number of actions waiting to be executed.
+     * @return Number of deferred actions
+     */
+    public int getDeferredCount() {
+        int count = 0;
+        for (List<Integer> indices : this.deferred.values()) {
+            count += indices.size();
+        }
+        return count;
+    }
+    
+    /**
+     * Gets the sequence number of the first change a package makes. Changes
+     * made by deferred actions come after all changes made while loading, as
+     * they run later. Within each phase, changes follow the load order of
+     * their packages, which a package keeps when it is reloaded.
+     * @param pkg The package about to be executed
+     * @param deferred Whether the deferred actions of the package are executed
+     * @return The first sequence number
+     */
+    private long sequenceBase(LoadedPackage pkg, boolean deferred) {
+        String path = pkg.file.getAbsolutePath();
+        Integer order = this.loadOrder.get(path);
+        if (order == null) {
+            order = this.loadOrder.size();
+            this.loadOrder.put(path, order);
+        }
+        return (deferred ? 1L << 62 : 0L) | ((long) order << 32);
+    }
+    
+    /**
+     * Queues an action for deferred execution.
+     * @param pkg The package containing the action
+     * @param index Index of the action in the package
+     */
+    private void defer(LoadedPackage pkg, int index) {
+        List<Integer> indices = this.deferred.get(pkg);
+        if (indices == null) {
+            indices = new ArrayList<Integer>();
+            this.deferred.put(pkg, indices);
+        }
+        indices.add(index);
+    }
+    
+    /**
+     * Executes a single action and records its execution time.
+     * @param pkg The package containing the action
+     * @param actions All actions of the package
+     * @param index Index of the action to execute
+     * @param context Execution context passed to the action
+     */
+    private static void executeAction(LoadedPackage pkg, Action[] actions, int index, ActionExecutionContext context) {
+        if (!ActionMetadata.isSupported(actions[index])) {
+            AndesiteML.warn("Action " + (index + 1) + " is not supported in this version of Andesite Mod Loader. This might cause trouble.");
+        }
+        long actionStart = System.nanoTime();
+        actions[index].execute(context);
+        pkg.profile.recordAction(index, actions[index].getClass().getName(), System.nanoTime() - actionStart);
+    }
+    
+    /**
+     * Logs an action that failed to execute. The remaining actions of its
+     * package are skipped; the actions executed before it stay applied.
+     * @param pkg The package containing the action
+     * @param failure The exception thrown by the action
+     */
+    private static void reportActionFailure(LoadedPackage pkg, RuntimeException failure) {
+        reportReadFailure(failure);
+        AndesiteML.error("Skipping the remaining actions of {}", pkg.file.getName());
+    }
+    
+    /**
+     * Logs the wall time of each loading stage.
+     * @param packages The packages that were loaded
+     */
+    private void reportTimings(List<LoadedPackage> packages) {
+        long readSum = 0L;
+        int cached = 0;
+        for (LoadedPackage pkg : packages) {
+            readSum += pkg.readTime;
+            if (pkg.cached) {
+                cached++;
+            }
+        }
+        AndesiteML.info("Loaded " + packages.size() + " packages using " + this.threads + " loader threads, " + cached + " from the verification cache");
+        AndesiteML.info("Stage scan: " + millis(this.scanTime) + " ms");
+        AndesiteML.info("Stage read: " + millis(this.readTime) + " ms wall, " + millis(readSum) + " ms summed over packages");
+        AndesiteML.info("Stage execute: " + millis(this.executeTime) + " ms");
+        AndesiteML.info("Peak package size decrypted at once: " + (this.budget.getPeak() / 1024L) + " KiB");
+        if (this.profile != null) {
+            this.profile.logSummary(5);
+        }
+    }
+    
+    /**
+     * Gets the measurements of the last load.
+     * @return The load profile, or null if nothing was loaded yet
+     */
+    public LoadProfile getProfile() {
+        return this.profile;
+    }
+    
+    /**
+     * Gets the wall time of the scan stage.
+     * @return Scan time in nanoseconds
+     */
+    public long getScanTime() {
+        return this.scanTime;
+    }
+    
+    /**
+     * Gets the wall time of the read stage.
+     * @return Read time in nanoseconds
+     */
+    public long getReadTime() {
+        return this.readTime;
+    }
+    
+    /**
+     * Gets the wall time of the execute stage.
+     * @return Execute time in nanoseconds
+     */
+    public long getExecuteTime() {
+        return this.executeTime;
+    }
+    
+    /**
+     * Waits for a package read task to complete.
+     * @param file The package file being read
+     * @param future The read task
+     * @return The read result
+     */
+    private static LoadedPackage await(File file, Future<LoadedPackage> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return new LoadedPackage(file, e.getCause(), new PackageProfile(file.getName()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new LoadedPackage(file, e, new PackageProfile(file.getName()));
+        }
+    }
+    
+    /**
+     * Logs the reason a package could not be read.
+     * @param failure The exception thrown while reading the package
+     */
+    static void reportReadFailure(Throwable failure) {
+        try {
+            throw failure;
+        } catch (InvalidKeyException e) {
+            AndesiteML.error("Failed to read mod package: Package is corrupt: Public key invalid", e);
+        } catch (FileNotFoundException e) {
+            AndesiteML.error("Failed to read mod package: File not found?! It was there a second ago, I swear!! (You shouldn't delete mods while they're being loaded...)", e);
+        } catch (IllegalArgumentException e) {
+            AndesiteML.error("Failed to read mod package: Package is corrupt: Not in Andesite Mod Package format, or an action in the package is corrupt", e);
+        } catch (NoSuchAlgorithmException e) {
+            AndesiteML.error("Failed to read mod package: Missing cryptographic algorithms: Your computer is highly insecure and incapable of reading Andesite mods.", e);
+        } catch (InvalidKeySpecException e) {
+            AndesiteML.error("Failed to read mod package: Missing cryptographic algorithms: Your computer is highly insecure and incapable of reading Andesite mods.", e);
+        } catch (NoSuchPaddingException e) {
+            AndesiteML.error("Failed to read mod package: Missing cryptographic algorithms: Your computer is highly insecure and incapable of reading Andesite mods.", e);
+        } catch (IllegalBlockSizeException e) {
+            AndesiteML.error("Failed to read mod package: Package is corrupt: Block size invalid", e);
+        } catch (BadPaddingException e) {
+            AndesiteML.error("Failed to read mod package: Package is corrupt: The package data is not padded properly", e);
+        } catch (ClassCastException e) {
+            AndesiteML.error("Failed to read mod package: Package is corrupt: Action is not an Action", e);
+        } catch (InstantiationException e) {
+            AndesiteML.error("Failed to read mod package: Andesite Mod Loader is broken: Can not instantiate Action - this is an Andesite Mod Loader bug, please report it", e);
+        } catch (IllegalAccessException e) {
+            AndesiteML.error("Failed to read mod package: Andesite Mod Loader is broken: Can not access Action - this is an Andesite Mod Loader bug, please report it", e);
+        } catch (InvocationTargetException e) {
+            AndesiteML.error("Failed to read mod package: Andesite Mod Loader is broken: Action constructor fails to invoke - this is an Andesite Mod Loader bug, please report it", e);
+        } catch (SecurityException e) {
+            AndesiteML.error("Failed to read mod package: Andesite Mod Loader is broken: Action cannot be read - this is an Andesite Mod Loader bug, please report it", e);
+        } catch (NoSuchMethodException e) {
+            AndesiteML.error("Failed to read mod package: Andesite Mod Loader is broken: Action does not support instantiation - this is an Andesite Mod Loader bug, please report it", e);
+        } catch (SignatureException e) {
+            AndesiteML.error("Failed to read mod package: Impersonation: Hash does not match content - SOMEONE HAS TAMPERED WITH THIS MOD!! Mod will not be loaded.", e);
+        } catch (IOException e) {
+            AndesiteML.error("Failed to read mod package: Input/output error: Unspecified error while reading the file. Please ensure you did not disconnect or remove the media the mod file was stored on while the game was loading", e);
+        } catch (InterruptedException e) {
+            AndesiteML.error("Failed to read mod package: Loading was interrupted", e);
+        } catch (Throwable e) {
+            AndesiteML.error("Failed to read mod package: Unexpected error", e);
+        }
+    }
+    
+    /**
+     * Converts nanoseconds to milliseconds.
+     * @param nanos Time in nanoseconds
+     * @return Time in milliseconds
+     */
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+    
+    /**
+     * Worker task reading a single package.
+     */
+    private static class ReadTask implements Callable<LoadedPackage> {
+        
+        /**
+         * The package file to read.
+         */
+        private final File file;
+        /**
+         * Verification cache, or null if caching is disabled.
+         */
+        private final VerifiedPackageCache cache;
+        /**
+         * Limit on the total size of packages decrypted at the same time.
+         */
+        private final ReadBudget budget;
+        
+        /**
+         * Creates a read task for the given package.
+         * @param file The package file to read
+         * @param cache Verification cache, or null if caching is disabled
+         * @param budget Limit on the total size of packages decrypted at the same time
+         */
+        ReadTask(File file, VerifiedPackageCache cache, ReadBudget budget) {
+            this.file = file;
+            this.cache = cache;
+            this.budget = budget;
+        }
+        
+        /**
+         * Reads, decrypts and verifies the package, or restores it from the verification cache.
+         * @return The read result
+         */
+        @Override
+        public LoadedPackage call() {
+            PackageProfile profile = new PackageProfile(this.file.getName());
+            long start = System.nanoTime();
+            try {
+                if (this.cache == null || !this.cache.isStorable()) {
+                    AndesiteProject project = readSignedPackage();
+                    profile.record(PackageProfile.STAGE_VERIFY, System.nanoTime() - start);
+                    return new LoadedPackage(this.file, project, profile, false);
+                }
+                long size = this.file.length();
+                long mtime = this.file.lastModified();
+                String hash = this.cache.hash(this.file);
+                profile.record(PackageProfile.STAGE_READ, System.nanoTime() - start);
+                
+                start = System.nanoTime();
+                AndesiteProject project = this.cache.lookup(this.file, size, mtime, hash);
+                if (project != null) {
+                    profile.record(PackageProfile.STAGE_DESERIALIZE, System.nanoTime() - start);
+                    return new LoadedPackage(this.file, project, profile, true);
+                }
+                
+                start = System.nanoTime();
+                project = readSignedPackage();
+                profile.record(PackageProfile.STAGE_VERIFY, System.nanoTime() - start);
+                
+                start = System.nanoTime();
+                if (this.file.length() == size && this.file.lastModified() == mtime) {
+                    this.cache.store(this.file, size, mtime, hash, project);
+                }
+                profile.record(PackageProfile.STAGE_CACHE, System.nanoTime() - start);
+                return new LoadedPackage(this.file, project, profile, false);
+            } catch (Exception e) {
+                profile.record(PackageProfile.STAGE_VERIFY, System.nanoTime() - start);
+                return new LoadedPackage(this.file, e, profile);
+            }
+        }
+        
+        /**
+         * Reads, decrypts and verifies the package within the read budget.
+         * @return The verified project
+         * @throws Exception If the package could not be read, decrypted or verified
+         */
+        private AndesiteProject readSignedPackage() throws Exception {
+            long size = this.file.length();
+            this.budget.acquire(size);
+            try {
+                return AndesiteIO.readSignedPackage(this.file);
+            } finally {
+                this.budget.release(size);
+            }
+        }
+    }
+    
+    /**
+     * Thread factory for loader worker threads.
+     */
+    private static class LoaderThreadFactory implements ThreadFactory {
+        
+        /**
+         * Number of threads created so far.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+        
+        /**
+         * Creates a daemon worker thread.
+         * @param r The task to run
+         * @return The new thread
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Andesite Loader #" + this.count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load-time measurements of a single Andesite mod package.
+ * @author Marius
+ */
+public class PackageProfile {
+    
+    /**
+     * Stage reading the package file to compute its content hash.
+     */
+    public static final String STAGE_READ = "read";
+    /**
+     * Stage decrypting, verifying and deserializing the package in AndesiteIO.
+     */
+    public static final String STAGE_VERIFY = "verify";
+    /**
+     * Stage deserializing a pre-verified snapshot from the verification cache.
+     */
+    public static final String STAGE_DESERIALIZE = "deserialize";
+    /**
+     * Stage storing a verified package in the verification cache.
+     */
+    public static final String STAGE_CACHE = "cache";
+    /**
+     * Stage executing the package actions.
+     */
+    public static final String STAGE_EXECUTE = "execute";
+    
+    /**
+     * File name of the package.
+     */
+    private final String file;
+    /**
+     * ID of the mod in the package, once known.
+     */
+    private String modid = null;
+    /**
+     * Whether the package was restored from the verification cache.
+     */
+    private boolean cached = false;
+    /**
+     * Reason the package failed to load, or null.
+     */
+    private String failure = null;
+    /**
+     * Stage times in nanoseconds, in the order the stages ran.
+     */
+    private final Map<String, Long> stages = new LinkedHashMap<String, Long>();
+    /**
+     * Per-action execution times.
+     */
+    private final List<ActionProfile> actions = new ArrayList<ActionProfile>();
+    
+    /**
+     * Creates an empty profile.
+     * @param file File name of the package
+     */
+    public PackageProfile(String file) {
+        this.file = file;
+    }
+    
+    /**
+     * Adds time spent in a stage.
+     * @param stage The stage name
+     * @param nanos Time spent in nanoseconds
+     */
+    public synchronized void record(String stage, long nanos) {
+        Long old = this.stages.get(stage);
+        this.stages.put(stage, old == null ? nanos : old + nanos);
+    }
+    
+    /**
+     * Adds the execution time of an action.
+     * @param index Index of the action in the package
+     * @param actionClass Class name of the action
+     * @param nanos Execution time in nanoseconds
+     */
+    public synchronized void recordAction(int index, String actionClass, long nanos) {
+        this.actions.add(new ActionProfile(this.modid, index, actionClass, nanos));
+    }
+    
+    /**
+     * Gets the file name of the package.
+     * @return Package file name
+     */
+    public String getFile() {
+        return this.file;
+    }
+    
+    /**
+     * Gets the ID of the mod in the package.
+     * @return The mod ID, or null if the package was not read
+     */
+    public synchronized String getModid() {
+        return this.modid;
+    }
+    
+    /**
+     * Sets the ID of the mod in the package.
+     * @param modid The mod ID
+     */
+    public synchronized void setModid(String modid) {
+        this.modid = modid;
+    }
+    
+    /**
+     * Checks whether the package was restored from the verification cache.
+     * @return True if the package was cached
+     */
+    public synchronized boolean isCached() {
+        return this.cached;
+    }
+    
+    /**
+     * Marks the package as restored from the verification cache.
+     * @param cached Whether the package was cached
+     */
+    public synchronized void setCached(boolean cached) {
+        this.cached = cached;
+    }
+    
+    /**
+     * Gets the reason the package failed to load.
+     * @return Failure description, or null
+     */
+    public synchronized String getFailure() {
+        return this.failure;
+    }
+    
+    /**
+     * Records the reason the package failed to load.
+     * @param failure The exception thrown while loading
+     */
+    public synchronized void setFailure(Throwable failure) {
+        this.failure = String.valueOf(failure);
+    }
+    
+    /**
+     * Gets the time spent in a stage.
+     * @param stage The stage name
+     * @return Time in nanoseconds, or 0 if the stage did not run
+     */
+    public synchronized long getStageTime(String stage) {
+        Long nanos = this.stages.get(stage);
+        return nanos == null ? 0L : nanos;
+    }
+    
+    /**
+     * Gets the times of all stages that ran.
+     * @return Stage times in nanoseconds by stage name
+     */
+    public synchronized Map<String, Long> getStageTimes() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(this.stages));
+    }
+    
+    /**
+     * Gets the time spent reading the package, that is in every stage except execution.
+     * @return Read time in nanoseconds
+     */
+    public synchronized long getReadTime() {
+        long total = 0L;
+        for (Map.Entry<String, Long> e : this.stages.entrySet()) {
+            if (!STAGE_EXECUTE.equals(e.getKey())) {
+                total += e.getValue();
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * Gets the execution times of the package actions.
+     * @return Action profiles in execution order
+     */
+    public synchronized List<ActionProfile> getActions() {
+        return Collections.unmodifiableList(new ArrayList<ActionProfile>(this.actions));
+    }
+    
+    /**
+     * Execution time of a single action.
+     */
+    public static class ActionProfile {
+        
+        /**
+         * ID of the mod the action belongs to.
+         */
+        public final String modid;
+        /**
+         * Index of the action in its package.
+         */
+        public final int index;
+        /**
+         * Class name of the action.
+         */
+        public final String actionClass;
+        /**
+         * Execution time in nanoseconds.
+         */
+        public final long nanos;
+        
+        /**
+         * Creates an action profile.
+         * @param modid ID of the mod the action belongs to
+         * @param index Index of the action in its package
+         * @param actionClass Class name of the action
+         * @param nanos Execution time in nanoseconds
+         */
+        public ActionProfile(String modid, int index, String actionClass, long nanos) {
+            this.modid = modid;
+            this.index = index;
+            this.actionClass = actionClass;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import info.varden.andesite.core.Action;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Headless bulk validator for Andesite mod packages.
+ * <p>
+ * Packages are read, decrypted and verified in parallel on all cores. The
+ * actions of every package are then checked against the Andesite version of
+ * this loader and dry-run against a {@link DryRunExecutionContext}. No
+ * Minecraft client or server is needed.
+ * <p>
+ * Usage: PackageValidator [--threads n] [--report file] &lt;package or directory&gt;...
+ * <p>
+ * Exits with status 0 if all packages are valid, 1 if any package has
+ * problems and 2 on usage errors.
+ * @author Marius
+ */
+public class PackageValidator {
+    
+    /**
+     * Validates the given packages.
+     * @param args Options, followed by package files or directories containing packages
+     */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        File report = null;
+        List<File> files = new ArrayList<File>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--threads".equals(args[i])) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if ("--report".equals(args[i])) {
+                    report = new File(args[++i]);
+                } else if (new File(args[i]).isDirectory()) {
+                    for (File file : new PackageLoader(new File(args[i]), 1).findPackages()) {
+                        files.add(file);
+                    }
+                } else {
+                    files.add(new File(args[i]));
+                }
+            }
+        } catch (RuntimeException e) {
+            files.clear();
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: PackageValidator [--threads n] [--report file] <package or directory>...");
+            System.exit(2);
+        }
+        
+        long start = System.nanoTime();
+        List<String> lines = new ArrayList<String>();
+        Map<String, String> modids = new HashMap<String, String>();
+        int invalid = 0;
+        for (LoadedPackage pkg : new PackageLoader(null, threads).readPackages(files.toArray(new File[files.size()]))) {
+            List<String> problems = validate(pkg, modids);
+            if (problems.isEmpty()) {
+                lines.add("OK   " + pkg.file + " (" + pkg.project.properties.modid + ", " + pkg.project.getAllActions().length + " actions)");
+            } else {
+                invalid++;
+                lines.add("FAIL " + pkg.file);
+                for (String problem : problems) {
+                    lines.add("     " + problem);
+                }
+            }
+        }
+        lines.add((files.size() - invalid) + " of " + files.size() + " packages valid in " + ((System.nanoTime() - start) / 1000000L) + " ms");
+        
+        for (String line : lines) {
+            System.out.println(line);
+        }
+        if (report != null) {
+            try {
+                write(report, lines);
+            } catch (IOException e) {
+                System.err.println("Could not write report to " + report + ": " + e.getMessage());
+            }
+        }
+        System.exit(invalid == 0 ? 0 : 1);
+    }
+    
+    /**
+     * Validates a single package.
+     * @param pkg The read package
+     * @param modids Files by mod ID of the packages validated so far
+     * @return Problems found, empty if the package is valid
+     */
+    private static List<String> validate(LoadedPackage pkg, Map<String, String> modids) {
+        List<String> problems = new ArrayList<String>();
+        if (!pkg.isLoaded()) {
+            problems.add("Could not be read: " + pkg.failure);
+            return problems;
+        }
+        String modid = pkg.project.properties.modid;
+        if (modid == null || modid.trim().isEmpty()) {
+            problems.add("No mod ID");
+        } else if (modids.containsKey(modid)) {
+            problems.add("Mod ID " + modid + " is also used by " + modids.get(modid));
+        } else {
+            modids.put(modid, pkg.file.getName());
+        }
+        Action[] actions = pkg.project.getAllActions();
+        DryRunExecutionContext context = new DryRunExecutionContext();
+        for (int i = 0; i < actions.length; i++) {
+            int version = ActionMetadata.getVersion(actions[i].getClass());
+            if (version > AndesiteML.ANDESITE_VERSION) {
+                problems.add("Action " + (i + 1) + " (" + actions[i].getClass().getName() + ") needs Andesite version " + version + ", this loader supports " + AndesiteML.ANDESITE_VERSION);
+            }
+            try {
+                actions[i].execute(context);
+            } catch (Throwable t) {
+                problems.add("Action " + (i + 1) + " (" + actions[i].getClass().getName() + ") failed: " + t);
+            }
+        }
+        problems.addAll(context.getProblems());
+        return problems;
+    }
+    
+    /**
+     * Writes the report to a file.
+     * @param file The report file
+     * @param lines Report lines
+     * @throws IOException If the file could not be written
+     */
+    private static void write(File file, List<String> lines) throws IOException {
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            for (String line : lines) {
+                out.println(line);
+            }
+        } finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("Could not write " + file);
+        }
+    }
+}
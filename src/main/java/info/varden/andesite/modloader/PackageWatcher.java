@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.relauncher.Side;
+
+/**
+ * Polling watcher reloading added, changed and removed mod packages.
+ * <p>
+ * On a client, the mod directory is polled from the client tick, so reloads
+ * happen on the main thread that also renders the blocks they change, even
+ * while an integrated server runs. On a dedicated server it is polled from
+ * the server tick. Either way, reloads happen between ticks. A package is
+ * considered changed when its size or modification time differs from the
+ * last poll.
+ * @author Marius
+ */
+public class PackageWatcher {
+    
+    /**
+     * The loader packages are reloaded with.
+     */
+    private final PackageLoader loader;
+    /**
+     * Number of ticks between polls.
+     */
+    private final int interval;
+    /**
+     * The side whose tick the directory is polled from.
+     */
+    private final Side side;
+    /**
+     * Whether a poll was requested for the next tick.
+     */
+    private volatile boolean requested = false;
+    /**
+     * Size and modification time of each known package, by absolute path.
+     */
+    private Map<String, long[]> known = new HashMap<String, long[]>();
+    /**
+     * Ticks since the last poll.
+     */
+    private int ticks = 0;
+    
+    /**
+     * Creates a watcher for the packages of a loader, taking the current directory contents as loaded.
+     * @param loader The loader packages are reloaded with
+     * @param interval Number of ticks between polls
+     * @param side The side whose tick the directory is polled from
+     */
+    public PackageWatcher(PackageLoader loader, int interval, Side side) {
+        this.loader = loader;
+        this.interval = Math.max(1, interval);
+        this.side = side;
+        this.known = snapshot(loader.findPackages());
+    }
+    
+    /**
+     * Gets the side whose tick the directory is polled from. Reloads must
+     * only run on the thread of that side.
+     * @return The polling side
+     */
+    public Side getSide() {
+        return this.side;
+    }
+    
+    /**
+     * Requests a poll at the next tick of the polling side, for callers on
+     * another thread.
+     */
+    public void requestPoll() {
+        this.requested = true;
+    }
+    
+    /**
+     * Checks the mod directory and reloads packages that changed since the last check.
+     * Must be called on the thread of the polling side.
+     * @return Number of packages reloaded or removed
+     */
+    public int poll() {
+        File[] files = this.loader.findPackages();
+        Map<String, long[]> current = snapshot(files);
+        List<File> changed = new ArrayList<File>();
+        List<File> removed = new ArrayList<File>();
+        for (File file : files) {
+            long[] then = this.known.get(file.getAbsolutePath());
+            long[] now = current.get(file.getAbsolutePath());
+            if (then == null || then[0] != now[0] || then[1] != now[1]) {
+                changed.add(file);
+            }
+        }
+        for (String path : this.known.keySet()) {
+            if (!current.containsKey(path)) {
+                removed.add(new File(path));
+            }
+        }
+        this.known = current;
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return 0;
+        }
+        this.loader.reload(changed, removed);
+        return changed.size() + removed.size();
+    }
+    
+    /**
+     * FML client tick handler polling the mod directory on a client.
+     * @param event FML tick event
+     */
+    @SubscribeEvent
+    public void onClientTick(TickEvent.ClientTickEvent event) {
+        if (this.side == Side.CLIENT && event.phase == TickEvent.Phase.END) {
+            tick();
+        }
+    }
+    
+    /**
+     * FML server tick handler polling the mod directory on a dedicated server.
+     * @param event FML tick event
+     */
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (this.side == Side.SERVER && event.phase == TickEvent.Phase.END) {
+            tick();
+        }
+    }
+    
+    /**
+     * Polls the mod directory if the interval has passed or a poll was requested.
+     */
+    private void tick() {
+        if (++this.ticks < this.interval && !this.requested) {
+            return;
+        }
+        this.ticks = 0;
+        this.requested = false;
+        poll();
+    }
+    
+    /**
+     * Records the size and modification time of package files.
+     * @param files The package files
+     * @return Size and modification time by absolute path
+     */
+    private static Map<String, long[]> snapshot(File[] files) {
+        Map<String, long[]> map = new HashMap<String, long[]>();
+        for (File file : files) {
+            map.put(file.getAbsolutePath(), new long[] { file.length(), file.lastModified() });
+        }
+        return map;
+    }
+}
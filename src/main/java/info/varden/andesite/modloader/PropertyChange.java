@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+/**
+ * A block property change recorded by an action.
+ * @author Marius
+ */
+public class PropertyChange {
+    
+    /**
+     * The ID of the changed block.
+     */
+    public final String block;
+    /**
+     * The changed property.
+     */
+    public final BlockProperty property;
+    /**
+     * The new property value.
+     */
+    public final Object value;
+    /**
+     * The ID of the mod making the change.
+     */
+    public final String modid;
+    /**
+     * Priority of the mod making the change.
+     */
+    public final int priority;
+    /**
+     * Load order sequence number of the change.
+     */
+    public final long sequence;
+    
+    /**
+     * Creates a property change.
+     * @param block The ID of the changed block
+     * @param property The changed property
+     * @param value The new property value
+     * @param modid The ID of the mod making the change
+     * @param priority Priority of the mod making the change
+     * @param sequence Load order sequence number of the change
+     */
+    public PropertyChange(String block, BlockProperty property, Object value, String modid, int priority, long sequence) {
+        this.block = block;
+        this.property = property;
+        this.value = value;
+        this.modid = modid;
+        this.priority = priority;
+        this.sequence = sequence;
+    }
+    
+    /**
+     * Checks whether this change wins over another change to the same property.
+     * Higher priorities win; for equal priorities the last writer wins.
+     * @param other The other change
+     * @return True if this change takes precedence
+     */
+    public boolean beats(PropertyChange other) {
+        if (this.priority != other.priority) {
+            return this.priority > other.priority;
+        }
+        return this.sequence > other.sequence;
+    }
+    
+    /**
+     * Describes the change.
+     * @return Human readable description
+     */
+    @Override
+    public String toString() {
+        return this.block + " " + this.property + " = " + this.value + " from " + this.modid;
+    }
+}
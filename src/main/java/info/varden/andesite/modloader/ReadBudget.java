@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+/**
+ * Limit on the total size of packages being decrypted at the same time.
+ * <p>
+ * Decrypting a package buffers its whole payload, so the heap needed by the
+ * read stage grows with the size of the packages in flight. Readers acquire
+ * the size of their package before decrypting it and wait while the budget
+ * is exhausted. A package larger than the whole budget is admitted once
+ * nothing else is in flight, so it is never starved.
+ * @author Marius
+ */
+public class ReadBudget {
+    
+    /**
+     * Maximum number of bytes in flight, or 0 for no limit.
+     */
+    private final long limit;
+    /**
+     * Number of bytes currently in flight.
+     */
+    private long inFlight = 0L;
+    /**
+     * Highest number of bytes that were in flight at once.
+     */
+    private long peak = 0L;
+    
+    /**
+     * Creates a read budget.
+     * @param limit Maximum number of bytes in flight, or 0 for no limit
+     */
+    public ReadBudget(long limit) {
+        this.limit = Math.max(0L, limit);
+    }
+    
+    /**
+     * Waits until the given number of bytes fits in the budget and reserves them.
+     * @param bytes Number of bytes to reserve
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    public synchronized void acquire(long bytes) throws InterruptedException {
+        if (this.limit > 0L) {
+            while (this.inFlight > 0L && this.inFlight + bytes > this.limit) {
+                wait();
+            }
+        }
+        this.inFlight += bytes;
+        this.peak = Math.max(this.peak, this.inFlight);
+    }
+    
+    /**
+     * Releases bytes reserved with {@link #acquire(long)}.
+     * @param bytes Number of bytes to release
+     */
+    public synchronized void release(long bytes) {
+        this.inFlight -= bytes;
+        notifyAll();
+    }
+    
+    /**
+     * Gets the highest number of bytes that were in flight at once.
+     * @return Peak number of bytes in flight
+     */
+    public synchronized long getPeak() {
+        return this.peak;
+    }
+}
@@ -0,0 +1,541 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Marius.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.varden.andesite.modloader;
+
+import info.varden.andesite.core.Action;
+import info.varden.andesite.core.AndesiteProject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of verified Andesite mod packages.
+ * <p>
+ * Snapshots are only written by this cache, after the package signature was
+ * verified on this machine, and are only used through an index entry that
+ * records the path, size, modification time and SHA-256 content hash of the
+ * package. The hash is always recomputed before a snapshot is used, so a
+ * snapshot is never trusted for a file whose content has changed, and a
+ * snapshot without a matching index entry is never read.
+ * <p>
+ * A snapshot starts with a table of the action classes it contains. The
+ * classes are resolved without being initialized and their metadata cached
+ * before the project is deserialized. Deserialization only resolves classes
+ * listed in the table or belonging to Andesite and the core Java packages.
+ * <p>
+ * If projects turn out not to be serializable, the index records that, and
+ * later launches read packages without hashing them until the project class
+ * becomes serializable.
+ * @author Marius
+ */
+public class VerifiedPackageCache {
+    
+    /**
+     * Name of the cache index file.
+     */
+    private static final String INDEX_FILE = "index.properties";
+    /**
+     * Index key recording that projects of the named class cannot be snapshotted.
+     */
+    private static final String UNSTORABLE_KEY = "unstorable";
+    /**
+     * File name extension of project snapshots.
+     */
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+    /**
+     * Magic number at the start of every snapshot file.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x414E5053;
+    /**
+     * Snapshot format version.
+     */
+    private static final int SNAPSHOT_VERSION = 2;
+    /**
+     * Content hash algorithm.
+     */
+    private static final String HASH_ALGORITHM = "SHA-256";
+    /**
+     * Size of the per-thread buffer used while hashing.
+     */
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Per-thread buffers used to read package files while hashing.
+     */
+    private static final ThreadLocal<ByteBuffer> HASH_BUFFERS = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        }
+    };
+    
+    /**
+     * Directory holding the index and snapshots.
+     */
+    private final File dir;
+    /**
+     * Cache entries by package path.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    /**
+     * Package paths looked up or stored during this session.
+     */
+    private final Set<String> touched = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /**
+     * Whether projects can be snapshotted at all.
+     */
+    private volatile boolean storable = true;
+    
+    /**
+     * Creates a cache stored in the given directory.
+     * @param dir Cache directory
+     */
+    public VerifiedPackageCache(File dir) {
+        this.dir = dir;
+    }
+    
+    /**
+     * Loads the cache index from disk. A missing or unreadable index results in an empty cache.
+     */
+    public void load() {
+        File index = new File(this.dir, INDEX_FILE);
+        if (!index.isFile()) {
+            return;
+        }
+        Properties props = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(index);
+            props.load(in);
+        } catch (IOException e) {
+            AndesiteML.warn("Verification cache index is unreadable and will be rebuilt: " + e.getMessage());
+            return;
+        } finally {
+            closeQuietly(in);
+        }
+        if (AndesiteProject.class.getName().equals(props.getProperty(UNSTORABLE_KEY)) && !Serializable.class.isAssignableFrom(AndesiteProject.class)) {
+            this.storable = false;
+            AndesiteML.info("Verification cache is disabled: Andesite projects are not serializable");
+            return;
+        }
+        for (String path : props.stringPropertyNames()) {
+            if (path.equals(UNSTORABLE_KEY)) {
+                continue;
+            }
+            Entry entry = Entry.parse(props.getProperty(path));
+            if (entry != null) {
+                this.entries.put(path, entry);
+            }
+        }
+    }
+    
+    /**
+     * Writes the cache index to disk and deletes snapshots of packages that were not seen this session.
+     */
+    public void save() {
+        if (!this.dir.isDirectory() && !this.dir.mkdirs()) {
+            AndesiteML.warn("Could not create verification cache directory " + this.dir);
+            return;
+        }
+        Properties props = new Properties();
+        Set<String> live = new HashSet<String>();
+        if (!this.storable) {
+            props.setProperty(UNSTORABLE_KEY, AndesiteProject.class.getName());
+        }
+        for (Map.Entry<String, Entry> e : this.entries.entrySet()) {
+            if (this.touched.contains(e.getKey())) {
+                props.setProperty(e.getKey(), e.getValue().toString());
+                live.add(e.getValue().hash + SNAPSHOT_EXTENSION);
+            }
+        }
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(new File(this.dir, INDEX_FILE));
+            props.store(out, "Andesite verified package cache");
+        } catch (IOException e) {
+            AndesiteML.warn("Could not write verification cache index: " + e.getMessage());
+        } finally {
+            closeQuietly(out);
+        }
+        File[] files = this.dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.getName().endsWith(SNAPSHOT_EXTENSION) && !live.contains(f.getName())) {
+                    f.delete();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Checks whether projects can be snapshotted. If not, looking packages up
+     * is pointless, and they should be read without being hashed.
+     * @return True if the cache can store projects
+     */
+    public boolean isStorable() {
+        return this.storable;
+    }
+    
+    /**
+     * Forgets the entry of a package that was removed, so that its snapshot
+     * is deleted by the next {@link #save()}.
+     * @param file The removed package file
+     */
+    public void remove(File file) {
+        String path = file.getAbsolutePath();
+        this.touched.remove(path);
+        this.entries.remove(path);
+    }
+    
+    /**
+     * Computes the content hash of a package file.
+     * <p>
+     * The file is read through a small per-thread buffer, so hashing does
+     * not copy the package onto the heap and does not keep the file mapped.
+     * @param file The package file
+     * @return Hex encoded SHA-256 hash of the file content
+     * @throws IOException If the file could not be read
+     */
+    public String hash(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = HASH_BUFFERS.get();
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            in.close();
+        }
+        return toHex(digest.digest());
+    }
+    
+    /**
+     * Looks up a verified snapshot of the given package.
+     * @param file The package file
+     * @param size Size of the file when it was hashed
+     * @param mtime Modification time of the file when it was hashed
+     * @param hash Content hash of the file
+     * @return The cached project, or null if there is no valid entry
+     */
+    public AndesiteProject lookup(File file, long size, long mtime, String hash) {
+        String path = file.getAbsolutePath();
+        this.touched.add(path);
+        Entry entry = this.entries.get(path);
+        if (entry == null || entry.size != size || entry.mtime != mtime || !entry.hash.equals(hash)) {
+            return null;
+        }
+        try {
+            return readSnapshot(new File(this.dir, hash + SNAPSHOT_EXTENSION), hash);
+        } catch (Exception e) {
+            AndesiteML.warn("Discarding unreadable verification cache entry for " + file.getName() + ": " + e);
+            this.entries.remove(path);
+            return null;
+        }
+    }
+    
+    /**
+     * Stores a snapshot of a freshly verified package.
+     * @param file The package file
+     * @param size Size of the file when it was hashed
+     * @param mtime Modification time of the file when it was hashed
+     * @param hash Content hash of the file
+     * @param project The verified project
+     */
+    public void store(File file, long size, long mtime, String hash, AndesiteProject project) {
+        String path = file.getAbsolutePath();
+        this.touched.add(path);
+        if (!this.storable) {
+            return;
+        }
+        if (!(((Object) project) instanceof Serializable)) {
+            this.storable = false;
+            AndesiteML.warn("Andesite projects are not serializable; verification cache is disabled");
+            return;
+        }
+        if (!this.dir.isDirectory() && !this.dir.mkdirs()) {
+            return;
+        }
+        File snapshot = new File(this.dir, hash + SNAPSHOT_EXTENSION);
+        try {
+            if (!snapshot.isFile()) {
+                writeSnapshot(snapshot, hash, project);
+            }
+            this.entries.put(path, new Entry(size, mtime, hash));
+        } catch (IOException e) {
+            AndesiteML.warn("Could not cache verified package " + file.getName() + ": " + e);
+        }
+    }
+    
+    /**
+     * Reads a project snapshot, checking that it belongs to the given content hash.
+     * @param snapshot The snapshot file
+     * @param hash Expected content hash
+     * @return The snapshotted project
+     * @throws IOException If the snapshot is missing, unreadable or belongs to another hash
+     * @throws ClassNotFoundException If a class in the snapshot no longer exists
+     */
+    private static AndesiteProject readSnapshot(File snapshot, String hash) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)));
+        try {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION || !in.readUTF().equals(hash)) {
+                throw new IOException("Snapshot header does not match");
+            }
+            int count = in.readInt();
+            Set<String> classes = new HashSet<String>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int version = in.readInt();
+                Class<?> actionClass = Class.forName(name, false, VerifiedPackageCache.class.getClassLoader());
+                if (!Action.class.isAssignableFrom(actionClass)) {
+                    throw new IOException(name + " is not an action");
+                }
+                if (ActionMetadata.getVersion(actionClass) != version) {
+                    throw new IOException("Action metadata of " + name + " changed");
+                }
+                classes.add(name);
+            }
+            return (AndesiteProject) new SnapshotInputStream(in, classes).readObject();
+        } finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Writes a project snapshot atomically.
+     * @param snapshot The snapshot file
+     * @param hash Content hash of the package the project was read from
+     * @param project The project to snapshot
+     * @throws IOException If the snapshot could not be written
+     */
+    private void writeSnapshot(File snapshot, String hash, AndesiteProject project) throws IOException {
+        File tmp = File.createTempFile(hash, ".tmp", this.dir);
+        boolean done = false;
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeUTF(hash);
+                Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
+                for (Action action : project.getAllActions()) {
+                    classes.add(action.getClass());
+                }
+                out.writeInt(classes.size());
+                for (Class<?> actionClass : classes) {
+                    out.writeUTF(actionClass.getName());
+                    out.writeInt(ActionMetadata.getVersion(actionClass));
+                }
+                ObjectOutputStream oos = new ObjectOutputStream(out);
+                oos.writeObject(project);
+                oos.flush();
+            } finally {
+                out.close();
+            }
+            done = tmp.renameTo(snapshot) || snapshot.isFile();
+        } finally {
+            if (!done || tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+    
+    /**
+     * Creates a new content hash digest.
+     * @return A SHA-256 message digest
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    /**
+     * Hex encodes a byte array.
+     * @param bytes The bytes to encode
+     * @return Lower case hex string
+     */
+    static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = digits[(bytes[i] >> 4) & 0xF];
+            out[i * 2 + 1] = digits[bytes[i] & 0xF];
+        }
+        return new String(out);
+    }
+    
+    /**
+     * Closes a stream, ignoring any errors.
+     * @param c The stream to close, or null
+     */
+    private static void closeQuietly(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                // Nothing sensible to do here
+            }
+        }
+    }
+    
+    /**
+     * Object stream resolving only the classes a snapshot may contain.
+     */
+    private static class SnapshotInputStream extends ObjectInputStream {
+        
+        /**
+         * Names of the action classes listed in the snapshot's class table.
+         */
+        private final Set<String> actions;
+        
+        /**
+         * Creates a snapshot object stream.
+         * @param in The stream positioned after the class table
+         * @param actions Names of the action classes in the class table
+         * @throws IOException If the stream header could not be read
+         */
+        SnapshotInputStream(InputStream in, Set<String> actions) throws IOException {
+            super(in);
+            this.actions = actions;
+        }
+        
+        /**
+         * Resolves a class without initializing it, rejecting classes that
+         * are not listed in the class table and do not belong to Andesite
+         * or the core Java packages.
+         * @param desc Descriptor of the class
+         * @return The resolved class
+         * @throws IOException If the class is not allowed in a snapshot
+         * @throws ClassNotFoundException If the class does not exist
+         */
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            String element = name.replaceFirst("^\\[+L?", "").replaceFirst(";$", "");
+            if (!this.actions.contains(element) && !element.startsWith("info.varden.andesite.") && !element.startsWith("java.lang.") && !element.startsWith("java.util.") && element.length() > 1) {
+                throw new InvalidClassException(name, "Class is not allowed in a verification cache snapshot");
+            }
+            return super.resolveClass(desc);
+        }
+        
+        /**
+         * Rejects proxy classes, which a snapshot never contains.
+         * @param interfaces Names of the proxied interfaces
+         * @return Never returns
+         * @throws IOException Always
+         */
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("Proxy classes are not allowed in a verification cache snapshot");
+        }
+    }
+    
+    /**
+     * A single cache index entry.
+     */
+    private static class Entry {
+        
+        /**
+         * File size in bytes.
+         */
+        final long size;
+        /**
+         * File modification time.
+         */
+        final long mtime;
+        /**
+         * Hex encoded content hash.
+         */
+        final String hash;
+        
+        /**
+         * Creates an index entry.
+         * @param size File size in bytes
+         * @param mtime File modification time
+         * @param hash Hex encoded content hash
+         */
+        Entry(long size, long mtime, String hash) {
+            this.size = size;
+            this.mtime = mtime;
+            this.hash = hash;
+        }
+        
+        /**
+         * Parses an index entry.
+         * @param value Serialized entry
+         * @return The entry, or null if the value is malformed
+         */
+        static Entry parse(String value) {
+            String[] parts = value.split(":");
+            if (parts.length != 3) {
+                return null;
+            }
+            try {
+                return new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        
+        /**
+         * Serializes the entry for the index file.
+         * @return Serialized entry
+         */
+        @Override
+        public String toString() {
+            return this.size + ":" + this.mtime + ":" + this.hash;
+        }
+    }
+}